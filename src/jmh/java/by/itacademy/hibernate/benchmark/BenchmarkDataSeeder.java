@@ -0,0 +1,131 @@
+package by.itacademy.hibernate.benchmark;
+
+import lombok.Cleanup;
+import lombok.experimental.UtilityClass;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+/**
+ * Заполняет базу данными для бенчмарков: {rows} выплат, по 10 выплат на сотрудника, 100 компаний и 100 чатов.
+ * Вставка идёт пачками через прямой JDBC с явными id, минуя сессию и генератор id Hibernate.
+ * Поэтому после вставки последовательности (и IDENTITY-столбец chat) сдвигаются за вставленные строки,
+ * чтобы последующие вставки через Hibernate не получили уже занятые id
+ */
+@UtilityClass
+public class BenchmarkDataSeeder {
+
+    public static final int COMPANIES = 100;
+    public static final int PAYMENTS_PER_USER = 10;
+    public static final int FIRST_NAMES = 1000;
+    public static final int CHATS = 100;
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final int SEQUENCE_STEP = 50;
+    private static final LocalDate MIN_BIRTHDAY = LocalDate.of(1950, 1, 1);
+
+    public void seed(SessionFactory sessionFactory, int rows) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.doWork(connection -> {
+            connection.setAutoCommit(false);
+            int users = Math.max(rows / PAYMENTS_PER_USER, 1);
+            insertCompanies(connection);
+            insertUsers(connection, users);
+            insertPayments(connection, users, rows);
+            insertChats(connection);
+            restartSequences(connection, users, rows);
+        });
+    }
+
+    public String companyName(int index) {
+        return "Company-" + index;
+    }
+
+    public String firstName(long userId) {
+        return "First-" + userId % FIRST_NAMES;
+    }
+
+    public String lastName(long userId) {
+        return "Last-" + userId;
+    }
+
+    private void insertCompanies(Connection connection) throws SQLException {
+        @Cleanup PreparedStatement statement = connection.prepareStatement(
+                "insert into company (id, name) values (?, ?)");
+        for (int i = 1; i <= COMPANIES; i++) {
+            statement.setInt(1, i);
+            statement.setString(2, companyName(i));
+            statement.addBatch();
+        }
+        statement.executeBatch();
+        connection.commit();
+    }
+
+    private void insertUsers(Connection connection, int users) throws SQLException {
+        @Cleanup PreparedStatement statement = connection.prepareStatement("""
+                insert into users (id, firstname, lastname, birth_date, username, role, company_id)
+                values (?, ?, ?, ?, ?, ?, ?)
+                """);
+        for (long id = 1; id <= users; id++) {
+            statement.setLong(1, id);
+            statement.setString(2, firstName(id));
+            statement.setString(3, lastName(id));
+            statement.setDate(4, Date.valueOf(MIN_BIRTHDAY.plusDays(id % 18_000)));
+            statement.setString(5, "user" + id);
+            statement.setString(6, id % 100 == 0 ? "ADMIN" : "USER");
+            statement.setInt(7, (int) (id % COMPANIES) + 1);
+            statement.addBatch();
+            flushIfFull(connection, statement, id);
+        }
+        statement.executeBatch();
+        connection.commit();
+    }
+
+    private void insertPayments(Connection connection, int users, int rows) throws SQLException {
+        @Cleanup PreparedStatement statement = connection.prepareStatement(
+                "insert into payment (id, amount, receiver_id) values (?, ?, ?)");
+        for (long id = 1; id <= rows; id++) {
+            statement.setLong(1, id);
+            statement.setInt(2, (int) (100 + id * 31 % 900));
+            statement.setLong(3, (id - 1) % users + 1);
+            statement.addBatch();
+            flushIfFull(connection, statement, id);
+        }
+        statement.executeBatch();
+        connection.commit();
+    }
+
+    private void insertChats(Connection connection) throws SQLException {
+        @Cleanup PreparedStatement statement = connection.prepareStatement("insert into chat (id, name) values (?, ?)");
+        for (long id = 1; id <= CHATS; id++) {
+            statement.setLong(1, id);
+            statement.setString(2, "Chat-" + id);
+            statement.addBatch();
+        }
+        statement.executeBatch();
+        connection.commit();
+    }
+
+    private void restartSequences(Connection connection, int users, int rows) throws SQLException {
+        @Cleanup Statement statement = connection.createStatement();
+        // pooled-оптимизатор выдаёт id ниже значения последовательности, поэтому запас - шаг последовательности
+        statement.execute("alter sequence company_seq restart with " + (COMPANIES + SEQUENCE_STEP + 1));
+        statement.execute("alter sequence users_seq restart with " + (users + SEQUENCE_STEP + 1));
+        statement.execute("alter sequence payment_seq restart with " + (rows + SEQUENCE_STEP + 1));
+        statement.execute("alter table chat alter column id restart with " + (CHATS + 1));
+        connection.commit();
+    }
+
+    private void flushIfFull(Connection connection, PreparedStatement statement, long count) throws SQLException {
+        if (count % BATCH_SIZE == 0) {
+            statement.executeBatch();
+            connection.commit();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package by.itacademy.hibernate.benchmark;
+
+import by.itacademy.hibernate.util.HibernateBootstrap;
+import by.itacademy.hibernate.util.HibernateUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время создания и закрытия SessionFactory: отдельная фабрика со своим реестром сервисов и пулом
+ * против фабрики из общего {@link HibernateBootstrap}. Схема не пересоздаётся, замеряется только bootstrap
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+public class BootstrapBenchmark {
+
+    private HibernateBootstrap bootstrap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = bootstrapProperties();
+        properties.setProperty("hibernate.hikari.poolName", "bootstrap-benchmark");
+        bootstrap = new HibernateBootstrap(properties);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bootstrap.close();
+    }
+
+    @Benchmark
+    public void standalone() {
+        HibernateUtil.buildSessionFactory(bootstrapProperties()).close();
+    }
+
+    @Benchmark
+    public void sharedServiceRegistry() {
+        bootstrap.buildSessionFactory().close();
+    }
+
+    private static Properties bootstrapProperties() {
+        Properties properties = UserDaoBenchmark.benchmarkProperties();
+        properties.setProperty("hibernate.hbm2ddl.auto", "none");
+        return properties;
+    }
+}
@@ -0,0 +1,406 @@
+package by.itacademy.hibernate.benchmark;
+
+import by.itacademy.hibernate.benchmark.LoadOperation.LoadDataset;
+import by.itacademy.hibernate.monitoring.ConnectionPoolMetrics;
+import by.itacademy.hibernate.monitoring.ConnectionPoolMetricsMXBean;
+import by.itacademy.hibernate.util.HibernateUtil;
+import lombok.Cleanup;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+
+import javax.persistence.OptimisticLockException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный тест слоя персистентности: {threads} воркеров выполняют смесь читающих операций UserDao
+ * и записей Payment/UserChat (см. {@link LoadOperation}, {@link LoadTestConfig}) и печатают устойчивую
+ * пропускную способность, перцентили задержки по операциям, время ожидания соединения из пула,
+ * дедлоки и ожидания блокировок.
+ * <p>
+ * При заданном {@code rate} нагрузка открытая: операции запускаются по расписанию, и задержка считается
+ * от запланированного времени старта, поэтому очередь за насыщенным пулом или базой видна в перцентилях,
+ * а не прячется за снизившимся темпом (coordinated omission). Без {@code rate} каждый воркер работает в цикле
+ * и показывает предельную пропускную способность. Конфигурация SessionFactory - как у {@link UserDaoBenchmark}:
+ * системные свойства {@code hibernate.*} переопределяют H2 по умолчанию
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@load-test -Dload.args="threads=32 rate=2000 hotUsers=100" \
+ *     -Dload.jvmArgs="-Dhibernate.connection.url=jdbc:postgresql://localhost:5432/postgres ... -Dhibernate.hikari.maximumPoolSize=20"
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final String DEFAULT_POOL_NAME = "load-generator";
+    private static final long SAMPLE_INTERVAL_MILLIS = 100;
+    private static final double MICROS_PER_MILLI = 1_000.0;
+
+    private final SessionFactory sessionFactory;
+    private final Properties properties;
+    private final LoadTestConfig config;
+    private final LoadDataset dataset;
+    private final String poolName;
+    private final LoadOperation[] operations;
+    private final int[] cumulativeWeights;
+    private final Map<LoadOperation, OperationStats> stats = new EnumMap<>(LoadOperation.class);
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final LongAccumulator maxPendingThreads = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxLockWaiters = new LongAccumulator(Math::max, 0);
+    private final LongAdder lockWaiterSamples = new LongAdder();
+    private final LongAdder lockWaiterSum = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+    private final LongAdder completedInWindow = new LongAdder();
+
+    /**
+     * {properties} - свойства, из которых построена {sessionFactory}: по ним открывается соединение для счётчиков
+     * PostgreSQL (SessionFactory#getProperties скрывает пароль)
+     */
+    public LoadGenerator(SessionFactory sessionFactory, Properties properties, LoadTestConfig config) {
+        this.sessionFactory = sessionFactory;
+        this.properties = properties;
+        this.config = config;
+        int users = Math.max(config.rows() / BenchmarkDataSeeder.PAYMENTS_PER_USER, 1);
+        this.dataset = new LoadDataset(users, config.rows(),
+                config.hotUsers() == 0 ? users : Math.min(config.hotUsers(), users));
+        this.poolName = properties.getProperty("hibernate.hikari.poolName", DEFAULT_POOL_NAME);
+        List<LoadOperation> selected = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int total = 0;
+        for (LoadOperation operation : LoadOperation.values()) {
+            stats.put(operation, new OperationStats());
+            int weight = config.mix().getOrDefault(operation, 0);
+            if (weight > 0) {
+                total += weight;
+                selected.add(operation);
+                weights.add(total);
+            }
+        }
+        this.operations = selected.toArray(LoadOperation[]::new);
+        this.cumulativeWeights = weights.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        Properties properties = UserDaoBenchmark.benchmarkProperties();
+        properties.putIfAbsent("hibernate.hikari.poolName", DEFAULT_POOL_NAME);
+        SessionFactory sessionFactory = HibernateUtil.buildSessionFactory(properties);
+        try {
+            if (config.seed()) {
+                System.out.printf("Seeding %d payments...%n", config.rows());
+                BenchmarkDataSeeder.seed(sessionFactory, config.rows());
+            }
+            new LoadGenerator(sessionFactory, properties, config)
+                    .run()
+                    .print(System.out);
+        } finally {
+            sessionFactory.close();
+        }
+    }
+
+    /**
+     * Прогревает систему {@code warmup} секунд, затем замеряет {@code duration} секунд
+     */
+    LoadReport run() throws Exception {
+        long now = System.nanoTime();
+        long measureStart = now + config.warmup().toNanos();
+        long end = measureStart + config.duration().toNanos();
+
+        ExecutorService workers = Executors.newFixedThreadPool(config.threads());
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        @Cleanup DatabaseProbe probe = DatabaseProbe.open(properties);
+        try {
+            sampler.schedule(() -> {
+                ConnectionPoolMetrics.find(poolName).ifPresent(ConnectionPoolMetricsMXBean::reset);
+                sampler.scheduleAtFixedRate(() -> sample(probe), 0, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }, measureStart - now, TimeUnit.NANOSECONDS);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < config.threads(); i++) {
+                futures.add(workers.submit(() -> work(measureStart, end)));
+            }
+            while (System.nanoTime() - measureStart < 0) {
+                LockSupport.parkNanos(measureStart - System.nanoTime());
+            }
+            long deadlocksBefore = probe.deadlocks();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long deadlocks = deadlocksBefore < 0 ? -1 : probe.deadlocks() - deadlocksBefore;
+            return report(deadlocks);
+        } finally {
+            sampler.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private void work(long measureStart, long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long interval = config.rate() == 0 ? 0 : TimeUnit.SECONDS.toNanos(config.threads()) / config.rate();
+        // воркеры стартуют вразнобой, иначе при заданном rate все операции приходят пачками
+        long intended = System.nanoTime() + (interval == 0 ? 0 : random.nextLong(interval));
+        while (true) {
+            if (interval == 0) {
+                intended = System.nanoTime();
+            } else {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            if (intended - end >= 0) {
+                return;
+            }
+            long started = System.nanoTime();
+            if (started - end >= 0) {
+                if (interval > 0) {
+                    // насыщение: запланированные операции не успели начаться до конца замера
+                    missed.add((end - intended + interval - 1) / interval);
+                }
+                return;
+            }
+            LoadOperation operation = pick(random);
+            String failure = execute(operation, random);
+            long finished = System.nanoTime();
+            if (finished - measureStart >= 0 && finished - end < 0) {
+                completedInWindow.increment();
+            }
+            if (intended - measureStart >= 0) {
+                stats.get(operation).record(finished - intended, failure != null);
+                if (failure != null) {
+                    failures.computeIfAbsent(failure, kind -> new LongAdder()).increment();
+                }
+            }
+            intended += interval;
+        }
+    }
+
+    private LoadOperation pick(ThreadLocalRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException("Weight " + value + " is out of range");
+    }
+
+    /**
+     * Выполняет операцию в отдельной транзакции. Возвращает вид ошибки или null
+     */
+    private String execute(LoadOperation operation, ThreadLocalRandom random) {
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            session.setDefaultReadOnly(operation.isReadOnly());
+            session.beginTransaction();
+            operation.execute(session, dataset, random);
+            session.getTransaction().commit();
+            return null;
+        } catch (RuntimeException e) {
+            if (session != null && session.getTransaction().isActive()) {
+                try {
+                    session.getTransaction().rollback();
+                } catch (RuntimeException ignored) {
+                    // соединение уже может быть закрыто, исходная ошибка важнее
+                }
+            }
+            return classify(e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    static String classify(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException) {
+                return "connection timeout";
+            }
+            if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+                return "optimistic lock";
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                switch (sqlException.getSQLState()) {
+                    case "40P01":
+                        return "deadlock";
+                    case "40001":
+                        // H2 сообщает этим кодом и о дедлоке
+                        return "serialization failure";
+                    case "55P03":
+                    case "HYT00":
+                        return "lock timeout";
+                    case "57014":
+                        return "statement timeout";
+                    default:
+                        break;
+                }
+            }
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    private void sample(DatabaseProbe probe) {
+        ConnectionPoolMetrics.find(poolName)
+                .ifPresent(pool -> maxPendingThreads.accumulate(pool.getPendingThreads()));
+        int lockWaiters = probe.lockWaiters();
+        if (lockWaiters >= 0) {
+            maxLockWaiters.accumulate(lockWaiters);
+            lockWaiterSum.add(lockWaiters);
+            lockWaiterSamples.increment();
+        }
+    }
+
+    private LoadReport report(long deadlocks) {
+        Map<LoadOperation, OperationStats> measured = new EnumMap<>(LoadOperation.class);
+        stats.forEach((operation, operationStats) -> {
+            if (operationStats.latencyMicros.getTotalCount() > 0) {
+                measured.put(operation, operationStats);
+            }
+        });
+        Map<String, Long> failureCounts = new TreeMap<>();
+        failures.forEach((kind, count) -> failureCounts.put(kind, count.sum()));
+        long samples = lockWaiterSamples.sum();
+        return new LoadReport(config, completedInWindow.sum(), missed.sum(), measured, failureCounts,
+                ConnectionPoolMetrics.find(poolName).orElse(null), maxPendingThreads.get(), deadlocks,
+                samples == 0 ? -1 : (double) lockWaiterSum.sum() / samples, samples == 0 ? -1 : maxLockWaiters.get());
+    }
+
+    private static class OperationStats {
+
+        private final ConcurrentHistogram latencyMicros = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+
+        void record(long latencyNanos, boolean failed) {
+            latencyMicros.recordValue(Math.max(latencyNanos / 1_000, 0));
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+
+    /**
+     * Результат замера
+     */
+    record LoadReport(LoadTestConfig config, long completed, long missed, Map<LoadOperation, OperationStats> operations,
+                             Map<String, Long> failures, ConnectionPoolMetricsMXBean pool, long maxPendingThreads,
+                             long deadlocks, double avgLockWaiters, long maxLockWaiters) {
+
+        /**
+         * Операции, завершённые за время замера, в секунду - независимо от того, когда они были запланированы
+         */
+        double throughput() {
+            return completed / (double) config.duration().toSeconds();
+        }
+
+        void print(PrintStream out) {
+            out.printf(Locale.ROOT, "%nLoad test: %d threads, target %s, %d s measured after %d s warmup, %d hot users%n",
+                    config.threads(), config.rate() == 0 ? "unlimited" : config.rate() + " ops/s",
+                    config.duration().toSeconds(), config.warmup().toSeconds(), config.hotUsers());
+            out.printf(Locale.ROOT, "Throughput: %.1f ops/s sustained (%d completed), %d failed, "
+                                    + "%d scheduled in the window but not started%n",
+                    throughput(), completed, failures.values().stream().mapToLong(Long::longValue).sum(), missed);
+            out.println("Latency from the scheduled start of operations scheduled in the window:");
+            out.printf(Locale.ROOT, "%-20s %9s %9s %9s %9s %9s %9s %9s %7s%n",
+                    "operation", "count", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+            operations.forEach((operation, stats) -> {
+                ConcurrentHistogram histogram = stats.latencyMicros;
+                out.printf(Locale.ROOT, "%-20s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7d%n",
+                        operation, histogram.getTotalCount(),
+                        histogram.getTotalCount() / (double) config.duration().toSeconds(),
+                        histogram.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                        histogram.getValueAtPercentile(90) / MICROS_PER_MILLI,
+                        histogram.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                        histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                        histogram.getMaxValue() / MICROS_PER_MILLI,
+                        stats.errors.sum());
+            });
+            if (pool != null) {
+                out.printf(Locale.ROOT, "Connection wait: p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms, "
+                                        + "timeouts %d, max pending threads %d, pool size %d%n",
+                        pool.getAcquireP50Millis(), pool.getAcquireP99Millis(), pool.getAcquireP999Millis(),
+                        pool.getAcquireMaxMillis(), pool.getTimeouts(), maxPendingThreads, pool.getTotalConnections());
+            }
+            out.println("Failures: " + (failures.isEmpty() ? "none" : failures));
+            if (deadlocks >= 0) {
+                out.printf(Locale.ROOT, "Database: %d deadlocks, lock waiters avg %.2f, max %d%n",
+                        deadlocks, avgLockWaiters, maxLockWaiters);
+            }
+        }
+    }
+
+    /**
+     * Отдельное от пула соединение для счётчиков PostgreSQL: дедлоки из pg_stat_database
+     * и число сессий, ждущих блокировку, из pg_stat_activity. На других базах возвращает -1
+     */
+    private static class DatabaseProbe implements AutoCloseable {
+
+        private final Connection connection;
+
+        private DatabaseProbe(Connection connection) {
+            this.connection = connection;
+        }
+
+        static DatabaseProbe open(Properties properties) throws SQLException {
+            String url = properties.getProperty("hibernate.connection.url");
+            if (url == null || !url.startsWith("jdbc:postgresql:")) {
+                return new DatabaseProbe(null);
+            }
+            return new DatabaseProbe(DriverManager.getConnection(url,
+                    properties.getProperty("hibernate.connection.username"),
+                    properties.getProperty("hibernate.connection.password")));
+        }
+
+        long deadlocks() {
+            return query("select deadlocks from pg_stat_database where datname = current_database()");
+        }
+
+        int lockWaiters() {
+            return (int) query("""
+                    select count(*) from pg_stat_activity
+                    where datname = current_database() and wait_event_type = 'Lock'
+                    """);
+        }
+
+        private synchronized long query(String sql) {
+            if (connection == null) {
+                return -1;
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(sql)) {
+                return resultSet.next() ? resultSet.getLong(1) : -1;
+            } catch (SQLException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package by.itacademy.hibernate.benchmark;
+
+import by.itacademy.hibernate.dao.UserDao;
+import by.itacademy.hibernate.entity.Chat;
+import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.entity.UserChat;
+import org.hibernate.Session;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Операции нагрузочного теста {@link LoadGenerator} над данными {@link BenchmarkDataSeeder}.
+ * Каждая выполняется в своей сессии и транзакции; читающие операции - в read-only сессии.
+ * Пишущие операции выбирают сотрудника среди первых {hotUsers}: чем их меньше, тем сильнее конкуренция
+ * за строки payment и статистики выплат, которую обновляют триггеры
+ */
+public enum LoadOperation {
+
+    FIND_BY_USERNAME(true) {
+        @Override
+        void execute(Session session, LoadDataset dataset, ThreadLocalRandom random) {
+            USER_DAO.findByUsername(session, "user" + dataset.anyUser(random));
+        }
+    },
+    FIND_COMPANY_PAGE(true) {
+        @Override
+        void execute(Session session, LoadDataset dataset, ThreadLocalRandom random) {
+            USER_DAO.findAllByCompanyName(session,
+                    BenchmarkDataSeeder.companyName(random.nextInt(BenchmarkDataSeeder.COMPANIES) + 1), null, 20);
+        }
+    },
+    FIND_AVG_PAYMENT(true) {
+        @Override
+        void execute(Session session, LoadDataset dataset, ThreadLocalRandom random) {
+            long userId = dataset.anyUser(random);
+            USER_DAO.findAveragePaymentAmountByFirstAndLastNames(session,
+                    BenchmarkDataSeeder.firstName(userId), BenchmarkDataSeeder.lastName(userId));
+        }
+    },
+    INSERT_PAYMENT(false) {
+        @Override
+        void execute(Session session, LoadDataset dataset, ThreadLocalRandom random) {
+            session.save(Payment.builder()
+                    .amount(100 + random.nextInt(900))
+                    .receiver(session.load(User.class, dataset.hotUser(random)))
+                    .build());
+        }
+    },
+    UPDATE_PAYMENT(false) {
+        @Override
+        void execute(Session session, LoadDataset dataset, ThreadLocalRandom random) {
+            Payment payment = session.get(Payment.class, dataset.hotUserPayment(random));
+            if (payment != null) {
+                payment.setAmount(100 + random.nextInt(900));
+            }
+        }
+    },
+    JOIN_CHAT(false) {
+        @Override
+        void execute(Session session, LoadDataset dataset, ThreadLocalRandom random) {
+            // builder не вызывает сеттеры UserChat, которые инициализируют коллекции User и Chat
+            session.save(UserChat.builder()
+                    .user(session.load(User.class, dataset.hotUser(random)))
+                    .chat(session.load(Chat.class, random.nextLong(BenchmarkDataSeeder.CHATS) + 1))
+                    .build());
+        }
+    };
+
+    private static final UserDao USER_DAO = UserDao.getInstance();
+
+    private final boolean readOnly;
+
+    LoadOperation(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    abstract void execute(Session session, LoadDataset dataset, ThreadLocalRandom random);
+
+    /**
+     * Размер засеянных данных: {users} сотрудников, у сотрудника u выплаты с id u, u + users, u + 2 * users...
+     */
+    record LoadDataset(int users, int payments, int hotUsers) {
+
+        long anyUser(ThreadLocalRandom random) {
+            return random.nextInt(users) + 1;
+        }
+
+        long hotUser(ThreadLocalRandom random) {
+            return random.nextInt(hotUsers) + 1;
+        }
+
+        long hotUserPayment(ThreadLocalRandom random) {
+            return hotUser(random) + (long) random.nextInt(Math.max(payments / users, 1)) * users;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package by.itacademy.hibernate.benchmark;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Параметры {@link LoadGenerator} из аргументов командной строки вида {@code name=value}:
+ * <pre>
+ * threads=8             число воркеров
+ * rate=0                целевая суммарная нагрузка, операций/с (0 - без ограничения, каждый воркер в цикле)
+ * duration=30           длительность замера, с
+ * warmup=5              прогрев перед замером, с
+ * rows=100000           число выплат в засеянных данных (см. {@link BenchmarkDataSeeder})
+ * seed=true             засеять базу; false - данные уже есть (вместе с -Dhibernate.hbm2ddl.auto=none)
+ * hotUsers=0            пишущие операции выбирают сотрудников среди первых hotUsers (0 - среди всех)
+ * mix=FIND_BY_USERNAME:30,...   веса операций {@link LoadOperation}
+ * </pre>
+ */
+public record LoadTestConfig(int threads, int rate, Duration duration, Duration warmup, int rows, boolean seed,
+                             int hotUsers, Map<LoadOperation, Integer> mix) {
+
+    public static final String DEFAULT_MIX =
+            "FIND_BY_USERNAME:30,FIND_COMPANY_PAGE:20,FIND_AVG_PAYMENT:20,INSERT_PAYMENT:15,UPDATE_PAYMENT:10,JOIN_CHAT:5";
+
+    public LoadTestConfig {
+        if (threads <= 0 || rate < 0 || rows <= 0 || hotUsers < 0) {
+            throw new IllegalArgumentException("threads and rows must be positive, rate and hotUsers non-negative");
+        }
+        if (duration.isNegative() || duration.isZero() || warmup.isNegative()) {
+            throw new IllegalArgumentException("duration must be positive and warmup non-negative");
+        }
+        if (mix.isEmpty() || mix.values().stream().anyMatch(weight -> weight < 0)
+            || mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("mix must have non-negative weights with a positive sum");
+        }
+        mix = Map.copyOf(mix);
+    }
+
+    public static LoadTestConfig parse(String... args) {
+        Map<String, String> values = new HashMap<>(Map.of(
+                "threads", "8",
+                "rate", "0",
+                "duration", "30",
+                "warmup", "5",
+                "rows", "100000",
+                "seed", "true",
+                "hotUsers", "0",
+                "mix", DEFAULT_MIX));
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2 || !values.containsKey(pair[0])) {
+                throw new IllegalArgumentException("Unknown argument: " + arg + ", expected one of " + values.keySet());
+            }
+            values.put(pair[0], pair[1]);
+        }
+        return new LoadTestConfig(
+                Integer.parseInt(values.get("threads")),
+                Integer.parseInt(values.get("rate")),
+                Duration.ofSeconds(Long.parseLong(values.get("duration"))),
+                Duration.ofSeconds(Long.parseLong(values.get("warmup"))),
+                Integer.parseInt(values.get("rows")),
+                Boolean.parseBoolean(values.get("seed")),
+                Integer.parseInt(values.get("hotUsers")),
+                parseMix(values.get("mix")));
+    }
+
+    private static Map<LoadOperation, Integer> parseMix(String mix) {
+        Map<LoadOperation, Integer> weights = new EnumMap<>(LoadOperation.class);
+        Arrays.stream(mix.split(","))
+                .map(String::strip)
+                .filter(entry -> !entry.isEmpty())
+                .forEach(entry -> {
+                    String[] pair = entry.split(":", 2);
+                    if (pair.length != 2) {
+                        throw new IllegalArgumentException("Mix entry must be OPERATION:weight, got " + entry);
+                    }
+                    weights.put(LoadOperation.valueOf(pair[0].strip()), Integer.parseInt(pair[1].strip()));
+                });
+        return weights;
+    }
+}
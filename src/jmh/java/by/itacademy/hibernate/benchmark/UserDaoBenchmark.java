@@ -0,0 +1,143 @@
+package by.itacademy.hibernate.benchmark;
+
+import by.itacademy.hibernate.dao.UserDao;
+import by.itacademy.hibernate.dto.CompanyAvgPayment;
+import by.itacademy.hibernate.dto.UserAvgPayment;
+import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.util.HibernateUtil;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Замеры всех методов {@link UserDao} на наборах из 10k, 1M и 10M выплат.
+ * Свойства {@code hibernate.*} из системных свойств JVM переопределяют базу по умолчанию (H2 в режиме PostgreSQL).
+ * {@link UserDao#isItPossible} группирует по сущности целиком, H2 такой запрос не выполняет - его замеряем на PostgreSQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserDaoBenchmark {
+
+    private static final String COMPANY_NAME = BenchmarkDataSeeder.companyName(1);
+    private static final long USER_ID = 1L;
+
+    @Param({"10000", "1000000", "10000000"})
+    private int rows;
+
+    private final UserDao userDao = UserDao.getInstance();
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = HibernateUtil.buildSessionFactory(benchmarkProperties());
+        BenchmarkDataSeeder.seed(sessionFactory, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public List<User> findAll() {
+        return inTransaction(userDao::findAll);
+    }
+
+    @Benchmark
+    public List<User> findAllByFirstName() {
+        return inTransaction(session -> userDao.findAllByFirstName(session, BenchmarkDataSeeder.firstName(USER_ID)));
+    }
+
+    @Benchmark
+    public List<User> findLimitedUsersOrderedByBirthday() {
+        return inTransaction(session -> userDao.findLimitedUsersOrderedByBirthday(session, 100));
+    }
+
+    @Benchmark
+    public List<User> findAllByCompanyName() {
+        return inTransaction(session -> userDao.findAllByCompanyName(session, COMPANY_NAME));
+    }
+
+    @Benchmark
+    public List<Payment> findAllPaymentsByCompanyName() {
+        return inTransaction(session -> userDao.findAllPaymentsByCompanyName(session, COMPANY_NAME));
+    }
+
+    @Benchmark
+    public Double findAveragePaymentAmountByFirstAndLastNames() {
+        return inTransaction(session -> userDao.findAveragePaymentAmountByFirstAndLastNames(session,
+                BenchmarkDataSeeder.firstName(USER_ID), BenchmarkDataSeeder.lastName(USER_ID)));
+    }
+
+    @Benchmark
+    public List<Object[]> findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName() {
+        return inTransaction(userDao::findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName);
+    }
+
+    @Benchmark
+    public List<Object[]> isItPossible() {
+        return inTransaction(userDao::isItPossible);
+    }
+
+    @Benchmark
+    public List<CompanyAvgPayment> findCompanyAvgPayments() {
+        return inTransaction(userDao::findCompanyAvgPayments);
+    }
+
+    @Benchmark
+    public List<UserAvgPayment> findUsersWithAvgPaymentAboveOverall() {
+        return inTransaction(userDao::findUsersWithAvgPaymentAboveOverall);
+    }
+
+    @Benchmark
+    public List<UserAvgPayment> findAboveAverageEarners() {
+        return inTransaction(session -> userDao.findAboveAverageEarners(session, 1.0, 100));
+    }
+
+    private <T> T inTransaction(Function<Session, T> query) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        T result = query.apply(session);
+        session.getTransaction().commit();
+        return result;
+    }
+
+    static Properties benchmarkProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.connection.url", "jdbc:h2:mem:benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        properties.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+        properties.setProperty("hibernate.connection.username", "sa");
+        properties.setProperty("hibernate.connection.password", "");
+        properties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.setProperty("hibernate.show_sql", "false");
+        properties.setProperty("hibernate.format_sql", "false");
+        properties.setProperty("hibernate.hbm2ddl.auto", "create");
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("hibernate."))
+                .forEach(name -> properties.setProperty(name, System.getProperty(name)));
+        return properties;
+    }
+}
@@ -0,0 +1,78 @@
+package by.itacademy.hibernate.analytics;
+
+import org.hibernate.StatelessSession;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Словари {@link PaymentSnapshot}: код компании или получателя - индекс в соответствующих массивах.
+ * Коды стабильны между обновлениями (колонки выплат хранят коды, а не id), новые id получают следующие коды.
+ * У получателя без компании код компании {@code -1}
+ */
+record Dictionary(Map<Integer, Integer> companyCodes,
+                  String[] companyNames,
+                  Map<Long, Integer> receiverCodes,
+                  long[] receiverIds,
+                  String[] firstNames,
+                  String[] lastNames,
+                  int[] receiverCompanyCodes) {
+
+    static final Dictionary EMPTY = new Dictionary(Map.of(), new String[0], Map.of(), new long[0],
+            new String[0], new String[0], new int[0]);
+
+    /**
+     * Возвращает код получателя или {@code -1}, если получатель появился после загрузки словаря
+     */
+    int receiverCode(Long receiverId) {
+        return receiverCodes.getOrDefault(receiverId, -1);
+    }
+
+    /**
+     * Перечитывает компании и сотрудников, сохраняя уже выданные коды
+     */
+    Dictionary reload(StatelessSession session) {
+        // компании читаются после сотрудников, чтобы в словаре были все компании, на которые те ссылаются
+        List<Object[]> receivers = session.createQuery("""
+                        select u.id, u.personalInfo.firstname, u.personalInfo.lastname, c.id
+                        from User u
+                        left join u.company c
+                        """, Object[].class)
+                .list();
+        List<Object[]> companies = session.createQuery("select c.id, c.name from Company c", Object[].class)
+                .list();
+
+        Map<Integer, Integer> newCompanyCodes = new HashMap<>(companyCodes);
+        String[] newCompanyNames = Arrays.copyOf(companyNames, companyNames.length + countNew(companies, companyCodes));
+        for (Object[] company : companies) {
+            int code = newCompanyCodes.computeIfAbsent((Integer) company[0], id -> newCompanyCodes.size());
+            newCompanyNames[code] = (String) company[1];
+        }
+
+        Map<Long, Integer> newReceiverCodes = new HashMap<>(receiverCodes);
+        int receiverCount = receiverIds.length + countNew(receivers, receiverCodes);
+        long[] newReceiverIds = Arrays.copyOf(receiverIds, receiverCount);
+        String[] newFirstNames = Arrays.copyOf(firstNames, receiverCount);
+        String[] newLastNames = Arrays.copyOf(lastNames, receiverCount);
+        int[] newReceiverCompanyCodes = Arrays.copyOf(receiverCompanyCodes, receiverCount);
+        for (Object[] receiver : receivers) {
+            Long id = (Long) receiver[0];
+            int code = newReceiverCodes.computeIfAbsent(id, key -> newReceiverCodes.size());
+            newReceiverIds[code] = id;
+            newFirstNames[code] = (String) receiver[1];
+            newLastNames[code] = (String) receiver[2];
+            newReceiverCompanyCodes[code] = receiver[3] == null ? -1 : newCompanyCodes.get((Integer) receiver[3]);
+        }
+
+        return new Dictionary(newCompanyCodes, newCompanyNames, newReceiverCodes, newReceiverIds,
+                newFirstNames, newLastNames, newReceiverCompanyCodes);
+    }
+
+    private static int countNew(List<Object[]> rows, Map<?, Integer> codes) {
+        return (int) rows.stream()
+                .filter(row -> !codes.containsKey(row[0]))
+                .count();
+    }
+}
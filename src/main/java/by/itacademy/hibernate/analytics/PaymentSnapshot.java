@@ -0,0 +1,335 @@
+package by.itacademy.hibernate.analytics;
+
+import by.itacademy.hibernate.change.ChangeEventBus;
+import by.itacademy.hibernate.change.ChangeSubscriber;
+import by.itacademy.hibernate.change.ChangeType;
+import by.itacademy.hibernate.change.EntityChange;
+import by.itacademy.hibernate.dto.CompanyAvgPayment;
+import by.itacademy.hibernate.dto.UserAvgPayment;
+import by.itacademy.hibernate.entity.Payment;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Колоночный снимок таблицы payment для аналитики: суммы лежат в {@code int[]}, получатели и компании
+ * закодированы словарём (код - индекс в массивах {@link Dictionary}), сущности Payment и User не создаются.
+ * Запросы - параллельные сканы колонок в памяти, PostgreSQL не затрагивается.
+ * <p>
+ * {@link #refresh()} догружает выплаты с id больше уже загруженного максимума и перечитывает словари
+ * (сотрудников и компаний на порядки меньше, чем выплат), поэтому смена имени или компании сотрудника
+ * видна после обновления. Изменённые и удалённые выплаты сами по себе не отслеживаются: после {@link #subscribeTo}
+ * такое изменение (или переполнение шины) помечает снимок устаревшим, и следующий refresh() строит его заново.
+ * Порядок id не совпадает с порядком коммитов (pooled-последовательность раздаёт id блоками по 50),
+ * поэтому вставка выплаты с id не больше уже загруженного максимума тоже помечает снимок устаревшим.
+ * Чтение не блокируется: запросы работают с неизменяемым {@link Columns}, который обновление публикует целиком
+ */
+@Slf4j
+public class PaymentSnapshot {
+
+    public static final int DEFAULT_FETCH_SIZE = 10_000;
+
+    /**
+     * Меньшие снимки сканируются в вызывающем потоке: накладные расходы fork/join больше самого скана
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private final SessionFactory sessionFactory;
+    private final int fetchSize;
+    private volatile Columns columns = Columns.EMPTY;
+    private volatile boolean stale;
+    /**
+     * Минимальный id выплаты, вставка которой пришла с начала последнего {@link #refresh()}
+     */
+    private final AtomicLong lowestInsertedId = new AtomicLong(Long.MAX_VALUE);
+
+    public PaymentSnapshot(SessionFactory sessionFactory) {
+        this(sessionFactory, DEFAULT_FETCH_SIZE);
+    }
+
+    public PaymentSnapshot(SessionFactory sessionFactory, int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive");
+        }
+        this.sessionFactory = sessionFactory;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Догружает выплаты с id больше {@link #getHighWaterMark()} и перечитывает словари. Возвращает число новых выплат
+     * (если снимок устарел - число всех выплат: он загружается заново)
+     */
+    public synchronized int refresh() {
+        long started = System.nanoTime();
+        boolean rebuild = stale;
+        // сбрасывается до чтения: изменение во время загрузки снова пометит снимок
+        stale = false;
+        lowestInsertedId.set(Long.MAX_VALUE);
+        Columns current = rebuild ? Columns.EMPTY : columns;
+
+        @Cleanup StatelessSession session = sessionFactory.openStatelessSession();
+        // курсор с fetch size PostgreSQL открывает только внутри транзакции
+        Transaction transaction = session.beginTransaction();
+        try {
+            Dictionary dictionary = current.dictionary().reload(session);
+            Columns refreshed = appendPayments(session, current.withDictionary(dictionary));
+            transaction.commit();
+            columns = refreshed;
+            // вставка, закоммиченная во время загрузки, могла получить id ниже нового максимума
+            if (lowestInsertedId.get() <= refreshed.highWaterMark()) {
+                stale = true;
+            }
+            int added = refreshed.size() - current.size();
+            log.debug("Payment snapshot: {} payments added, {} total, refreshed in {} ms",
+                    added, refreshed.size(), (System.nanoTime() - started) / 1_000_000);
+            return added;
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            if (rebuild) {
+                stale = true;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Подписывает снимок на изменения из {bus}: после коммита изменения или удаления выплаты, а также вставки
+     * выплаты с id не больше {@link #getHighWaterMark()}, следующий {@link #refresh()} перестроит снимок целиком
+     */
+    public void subscribeTo(ChangeEventBus bus) {
+        bus.subscribe(new ChangeSubscriber() {
+            @Override
+            public void onChanges(List<EntityChange> changes) {
+                for (EntityChange change : changes) {
+                    if (change.entityType() != Payment.class) {
+                        continue;
+                    }
+                    if (change.type() != ChangeType.INSERT) {
+                        stale = true;
+                    } else {
+                        long id = (Long) change.id();
+                        lowestInsertedId.accumulateAndGet(id, Math::min);
+                        if (id <= columns.highWaterMark()) {
+                            stale = true;
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void onOverflow(long lost) {
+                stale = true;
+            }
+        });
+    }
+
+    /**
+     * Снимок устарел: выплаты изменялись или удалялись после последнего {@link #refresh()}, либо пришла выплата
+     * с id ниже уже загруженных
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Число выплат в снимке
+     */
+    public int size() {
+        return columns.size();
+    }
+
+    /**
+     * Максимальный id загруженной выплаты
+     */
+    public long getHighWaterMark() {
+        return columns.highWaterMark();
+    }
+
+    /**
+     * Возвращает для каждой компании название и среднюю зарплату её сотрудников, упорядоченные по названию
+     * (см. {@link by.itacademy.hibernate.dao.UserDao#findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName})
+     */
+    public List<CompanyAvgPayment> findCompanyAvgPayments() {
+        Columns snapshot = columns;
+        Dictionary dictionary = snapshot.dictionary();
+        Aggregate aggregate = aggregate(snapshot, dictionary.receiverCompanyCodes(), dictionary.companyNames().length);
+
+        List<CompanyAvgPayment> result = new ArrayList<>();
+        for (int company = 0; company < aggregate.counts.length; company++) {
+            if (aggregate.counts[company] > 0) {
+                result.add(new CompanyAvgPayment(dictionary.companyNames()[company], aggregate.average(company)));
+            }
+        }
+        result.sort(Comparator.comparing(CompanyAvgPayment::name));
+        return result;
+    }
+
+    /**
+     * Возвращает среднюю зарплату сотрудника с указанными именем и фамилией, 0.0 - если выплат нет
+     * (см. {@link by.itacademy.hibernate.dao.UserDao#findAveragePaymentAmountByFirstAndLastNames})
+     */
+    public double findAveragePaymentAmountByFirstAndLastNames(String firstName, String lastName) {
+        Columns snapshot = columns;
+        Dictionary dictionary = snapshot.dictionary();
+        int[] matching = new int[dictionary.receiverIds().length];
+        for (int receiver = 0; receiver < matching.length; receiver++) {
+            matching[receiver] = Objects.equals(dictionary.firstNames()[receiver], firstName)
+                                 && Objects.equals(dictionary.lastNames()[receiver], lastName) ? 0 : -1;
+        }
+        Aggregate aggregate = aggregate(snapshot, matching, 1);
+        return aggregate.counts[0] == 0 ? 0.0 : aggregate.average(0);
+    }
+
+    /**
+     * Возвращает id, полное имя и средний размер выплат сотрудников, чей средний размер выплат не меньше
+     * среднего размера выплат всех сотрудников, упорядоченные по имени сотрудника
+     * (см. {@link by.itacademy.hibernate.dao.UserDao#isItPossible})
+     */
+    public List<UserAvgPayment> findUsersWithAvgPaymentAboveOverall() {
+        Columns snapshot = columns;
+        Dictionary dictionary = snapshot.dictionary();
+        int receivers = dictionary.receiverIds().length;
+        Aggregate aggregate = aggregate(snapshot, IntStream.range(0, receivers).toArray(), receivers);
+        long totalSum = Arrays.stream(aggregate.sums).sum();
+        long totalCount = Arrays.stream(aggregate.counts).sum();
+        if (totalCount == 0) {
+            return List.of();
+        }
+        double overall = (double) totalSum / totalCount;
+
+        List<Integer> above = new ArrayList<>();
+        for (int receiver = 0; receiver < receivers; receiver++) {
+            if (aggregate.counts[receiver] > 0 && aggregate.average(receiver) >= overall) {
+                above.add(receiver);
+            }
+        }
+        above.sort(Comparator.<Integer, String>comparing(receiver -> dictionary.firstNames()[receiver],
+                        Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(receiver -> dictionary.lastNames()[receiver], Comparator.nullsFirst(Comparator.naturalOrder())));
+        return above.stream()
+                .map(receiver -> new UserAvgPayment(dictionary.receiverIds()[receiver],
+                        dictionary.firstNames()[receiver] + " " + dictionary.lastNames()[receiver],
+                        aggregate.average(receiver)))
+                .toList();
+    }
+
+    /**
+     * Суммы и количества выплат по группам: группа выплаты - {@code groupOfReceiver[код получателя]},
+     * отрицательная группа - выплата не учитывается. Снимок делится на куски, которые сканируются параллельно
+     */
+    private static Aggregate aggregate(Columns columns, int[] groupOfReceiver, int groups) {
+        int size = columns.size();
+        int[] amounts = columns.amounts();
+        int[] receiverCodes = columns.receiverCodes();
+        int chunks = size < PARALLEL_THRESHOLD ? 1 : ForkJoinPool.getCommonPoolParallelism() * 4;
+        int chunkSize = (size + chunks - 1) / Math.max(chunks, 1);
+
+        IntStream chunkIndexes = IntStream.range(0, chunks);
+        if (chunks > 1) {
+            chunkIndexes = chunkIndexes.parallel();
+        }
+        return chunkIndexes
+                .mapToObj(chunk -> {
+                    Aggregate aggregate = new Aggregate(groups);
+                    int to = Math.min(size, (chunk + 1) * chunkSize);
+                    for (int i = chunk * chunkSize; i < to; i++) {
+                        int group = groupOfReceiver[receiverCodes[i]];
+                        if (group >= 0) {
+                            aggregate.sums[group] += amounts[i];
+                            aggregate.counts[group]++;
+                        }
+                    }
+                    return aggregate;
+                })
+                .reduce(Aggregate::merge)
+                .orElseGet(() -> new Aggregate(groups));
+    }
+
+    private Columns appendPayments(StatelessSession session, Columns columns) {
+        Dictionary dictionary = columns.dictionary();
+        int[] amounts = columns.amounts();
+        int[] receiverCodes = columns.receiverCodes();
+        int size = columns.size();
+        long highWaterMark = columns.highWaterMark();
+
+        try (ScrollableResults results = session.createQuery("""
+                        select p.id, p.amount, p.receiver.id from Payment p
+                        where p.id > :highWaterMark
+                        order by p.id asc
+                        """)
+                .setParameter("highWaterMark", highWaterMark)
+                .setFetchSize(fetchSize)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                if (size == amounts.length) {
+                    int capacity = Math.max(16, amounts.length + (amounts.length >> 1));
+                    amounts = Arrays.copyOf(amounts, capacity);
+                    receiverCodes = Arrays.copyOf(receiverCodes, capacity);
+                }
+                // новые строки пишутся за границей size текущего снимка, читатели их не видят до публикации
+                Long receiverId = (Long) results.get(2);
+                int receiverCode = dictionary.receiverCode(receiverId);
+                if (receiverCode < 0) {
+                    // получатель добавлен после чтения словаря
+                    dictionary = dictionary.reload(session);
+                    receiverCode = dictionary.receiverCode(receiverId);
+                }
+                highWaterMark = (Long) results.get(0);
+                amounts[size] = (Integer) results.get(1);
+                receiverCodes[size] = receiverCode;
+                size++;
+            }
+        }
+        return new Columns(dictionary, amounts, receiverCodes, size, highWaterMark);
+    }
+
+    /**
+     * Неизменяемое представление снимка: первые {size} элементов колонок и словарь, которым они закодированы
+     */
+    private record Columns(Dictionary dictionary, int[] amounts, int[] receiverCodes, int size, long highWaterMark) {
+
+        static final Columns EMPTY = new Columns(Dictionary.EMPTY, new int[0], new int[0], 0, 0L);
+
+        Columns withDictionary(Dictionary dictionary) {
+            return new Columns(dictionary, amounts, receiverCodes, size, highWaterMark);
+        }
+    }
+
+    private static class Aggregate {
+
+        final long[] sums;
+        final long[] counts;
+
+        Aggregate(int groups) {
+            this.sums = new long[groups];
+            this.counts = new long[groups];
+        }
+
+        Aggregate merge(Aggregate other) {
+            for (int group = 0; group < sums.length; group++) {
+                sums[group] += other.sums[group];
+                counts[group] += other.counts[group];
+            }
+            return this;
+        }
+
+        double average(int group) {
+            return (double) sums[group] / counts[group];
+        }
+    }
+}
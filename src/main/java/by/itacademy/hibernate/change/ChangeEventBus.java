@@ -0,0 +1,181 @@
+package by.itacademy.hibernate.change;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Шина изменений сущностей внутри процесса. Публикация ({@link #publish}) - одна запись в ограниченный
+ * кольцевой буфер без блокировок (многие писатели, один читатель: слот захватывается CAS по счётчику,
+ * готовность слота отмечается его номером последовательности). Поток рассылки забирает изменения пачками
+ * до {maxBatchSize} и передаёт их подписчикам; пустой буфер опрашивается раз в {@link #IDLE_PARK}.
+ * <p>
+ * Писатель никогда не ждёт: если буфер полон, изменение отбрасывается, а подписчики получают
+ * {@link ChangeSubscriber#onOverflow} перед следующей пачкой
+ */
+@Slf4j
+public class ChangeEventBus implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+    private static final Duration IDLE_PARK = Duration.ofMillis(1);
+
+    private final int mask;
+    private final int maxBatchSize;
+    private final AtomicReferenceArray<EntityChange> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final List<ChangeSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Thread dispatcher;
+    private volatile long dispatched;
+    private volatile boolean closed;
+
+    public ChangeEventBus() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * {capacity} округляется вверх до степени двойки
+     */
+    public ChangeEventBus(int capacity, int maxBatchSize) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Max batch size must be positive");
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.maxBatchSize = maxBatchSize;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.dispatcher = new Thread(this::dispatch, "change-event-bus");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Кладёт изменение в буфер. Возвращает false, если буфер полон или шина закрыта
+     */
+    public boolean publish(EntityChange change) {
+        if (closed) {
+            return false;
+        }
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, change);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                // слот ещё не освобождён читателем: буфер полон
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+    }
+
+    public void subscribe(ChangeSubscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(ChangeSubscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Ждёт, пока подписчики получат все изменения, опубликованные до вызова. Возвращает false по истечении {timeout}
+     */
+    public boolean awaitDispatched(Duration timeout) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (dispatched < target) {
+            if (System.nanoTime() - deadline >= 0 || closed) {
+                return dispatched >= target;
+            }
+            LockSupport.parkNanos(IDLE_PARK.toNanos());
+        }
+        return true;
+    }
+
+    /**
+     * Число изменений, отброшенных из-за переполнения буфера
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Останавливает поток рассылки; изменения, уже лежащие в буфере, доставляются подписчикам
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(dispatcher);
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch() {
+        long head = 0;
+        long reportedDropped = 0;
+        List<EntityChange> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            while (batch.size() < maxBatchSize) {
+                int index = (int) head & mask;
+                if (sequences.get(index) != head + 1) {
+                    break;
+                }
+                batch.add(slots.get(index));
+                slots.set(index, null);
+                sequences.set(index, head + mask + 1);
+                head++;
+            }
+            long lost = dropped.get() - reportedDropped;
+            if (lost > 0) {
+                reportedDropped += lost;
+                log.warn("Change event bus overflow: {} changes dropped", lost);
+                subscribers.forEach(subscriber -> deliver(subscriber, s -> s.onOverflow(lost)));
+            }
+            if (!batch.isEmpty()) {
+                List<EntityChange> changes = List.copyOf(batch);
+                subscribers.forEach(subscriber -> deliver(subscriber, s -> s.onChanges(changes)));
+                batch.clear();
+                dispatched = head;
+            } else if (closed && head == tail.get()) {
+                return;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK.toNanos());
+            }
+        }
+    }
+
+    private static void deliver(ChangeSubscriber subscriber, Consumer<ChangeSubscriber> delivery) {
+        try {
+            delivery.accept(subscriber);
+        } catch (RuntimeException e) {
+            log.error("Change subscriber {} failed", subscriber, e);
+        }
+    }
+}
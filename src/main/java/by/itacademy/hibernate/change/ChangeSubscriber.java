@@ -0,0 +1,21 @@
+package by.itacademy.hibernate.change;
+
+import java.util.List;
+
+/**
+ * Подписчик {@link ChangeEventBus}. Методы вызываются в потоке рассылки шины, по одному за раз,
+ * поэтому не должны блокироваться надолго
+ */
+public interface ChangeSubscriber {
+
+    /**
+     * Очередная пачка изменений в порядке публикации
+     */
+    void onChanges(List<EntityChange> changes);
+
+    /**
+     * Буфер был переполнен и {lost} изменений потеряно: всё, что построено по событиям, нужно считать устаревшим
+     */
+    default void onOverflow(long lost) {
+    }
+}
@@ -0,0 +1,7 @@
+package by.itacademy.hibernate.change;
+
+public enum ChangeType {
+    INSERT,
+    UPDATE,
+    DELETE
+}
@@ -0,0 +1,14 @@
+package by.itacademy.hibernate.change;
+
+import java.util.Set;
+
+/**
+ * Изменение сущности после коммита транзакции. {changedAttributes} - имена изменённых свойств для UPDATE;
+ * пустое множество означает, что изменилась вся сущность (INSERT, DELETE или UPDATE без dirty checking)
+ */
+public record EntityChange(Class<?> entityType, Object id, ChangeType type, Set<String> changedAttributes) {
+
+    public boolean affects(Class<?> type, String attribute) {
+        return entityType == type && (changedAttributes.isEmpty() || changedAttributes.contains(attribute));
+    }
+}
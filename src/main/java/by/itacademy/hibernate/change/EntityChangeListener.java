@@ -0,0 +1,91 @@
+package by.itacademy.hibernate.change;
+
+import by.itacademy.hibernate.entity.Company;
+import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.entity.UserChat;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Публикует в {@link ChangeEventBus} изменения User, Company, Payment и UserChat после коммита транзакции:
+ * подписчик не увидит изменение, которое ещё может откатиться, и не закэширует старое значение до коммита.
+ * Изменения массовыми HQL/SQL-запросами, StatelessSession и COPY событий не порождают
+ */
+public class EntityChangeListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+
+    private static final Set<Class<?>> TRACKED = Set.of(User.class, Company.class, Payment.class, UserChat.class);
+
+    private final ChangeEventBus bus;
+
+    public EntityChangeListener(ChangeEventBus bus) {
+        this.bus = bus;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publish(event.getPersister(), event.getId(), ChangeType.INSERT, Set.of());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publish(event.getPersister(), event.getId(), ChangeType.UPDATE,
+                changedAttributes(event.getPersister(), event.getDirtyProperties()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publish(event.getPersister(), event.getId(), ChangeType.DELETE, Set.of());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return TRACKED.contains(persister.getMappedClass());
+    }
+
+    @Override
+    @Deprecated
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    private void publish(EntityPersister persister, Object id, ChangeType type, Set<String> changedAttributes) {
+        // Hibernate вызывает post-commit слушатели для всех сущностей, если хотя бы одна их требует
+        if (requiresPostCommitHandling(persister)) {
+            bus.publish(new EntityChange(persister.getMappedClass(), id, type, changedAttributes));
+        }
+    }
+
+    private static Set<String> changedAttributes(EntityPersister persister, int[] dirtyProperties) {
+        if (dirtyProperties == null) {
+            return Set.of();
+        }
+        String[] names = persister.getPropertyNames();
+        Set<String> changed = new HashSet<>(dirtyProperties.length);
+        for (int property : dirtyProperties) {
+            changed.add(names[property]);
+        }
+        return Set.copyOf(changed);
+    }
+}
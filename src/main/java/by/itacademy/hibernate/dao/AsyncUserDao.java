@@ -0,0 +1,231 @@
+package by.itacademy.hibernate.dao;
+
+import by.itacademy.hibernate.dto.CompanyAvgPayment;
+import by.itacademy.hibernate.dto.UserAvgPayment;
+import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.util.ReadReplicaRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Асинхронный фасад над {@link UserDao}: каждый вызов выполняется на отдельном ограниченном пуле потоков
+ * в собственной read-only сессии и транзакции и возвращает {@link CompletableFuture}.
+ * <p>
+ * Одновременно выполняется не больше {threads} запросов, поэтому фасад занимает не больше {threads} соединений пула.
+ * Если в очереди уже {queueCapacity} запросов, новый сразу завершается {@link RejectedExecutionException}
+ * (вызывающий поток не блокируется). По истечении таймаута future завершается {@link TimeoutException},
+ * а выполняющийся SQL-запрос отменяется, освобождая поток и соединение.
+ * <p>
+ * Сессия закрывается до завершения future, поэтому нужные ассоциации загружаются через {@link FetchPlan}.
+ * Фасад, созданный над {@link ReadReplicaRouter}, выполняет запросы на репликах
+ */
+@Slf4j
+public class AsyncUserDao implements AutoCloseable {
+
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 100;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final UserDao userDao = UserDao.getInstance();
+    private final Supplier<Session> sessions;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+
+    public AsyncUserDao(SessionFactory sessionFactory) {
+        this(sessionFactory, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, DEFAULT_TIMEOUT);
+    }
+
+    public AsyncUserDao(SessionFactory sessionFactory, int threads, int queueCapacity, Duration timeout) {
+        this(sessionFactory::openSession, threads, queueCapacity, timeout);
+    }
+
+    public AsyncUserDao(ReadReplicaRouter router) {
+        this(router, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, DEFAULT_TIMEOUT);
+    }
+
+    public AsyncUserDao(ReadReplicaRouter router, int threads, int queueCapacity, Duration timeout) {
+        this(router::openReadOnlySession, threads, queueCapacity, timeout);
+    }
+
+    private AsyncUserDao(Supplier<Session> sessions, int threads, int queueCapacity, Duration timeout) {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Thread count and queue capacity must be positive");
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.sessions = sessions;
+        this.timeout = timeout;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new DaoThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public CompletableFuture<List<User>> findAll(FetchPlan fetchPlan) {
+        return execute(session -> userDao.findAll(session, fetchPlan));
+    }
+
+    public CompletableFuture<List<User>> findAllByFirstName(String firstName, FetchPlan fetchPlan) {
+        return execute(session -> userDao.findAllByFirstName(session, firstName, fetchPlan));
+    }
+
+    public CompletableFuture<List<User>> findLimitedUsersOrderedByBirthday(int limit, FetchPlan fetchPlan) {
+        return execute(session -> userDao.findLimitedUsersOrderedByBirthday(session, limit, fetchPlan));
+    }
+
+    public CompletableFuture<List<User>> findAllByCompanyName(String companyName, FetchPlan fetchPlan) {
+        return execute(session -> userDao.findAllByCompanyName(session, companyName, fetchPlan));
+    }
+
+    public CompletableFuture<Optional<User>> findByUsername(String username) {
+        return execute(session -> userDao.findByUsername(session, username));
+    }
+
+    public CompletableFuture<Slice<User>> findUsersOrderedByBirthday(String cursor, int limit, FetchPlan fetchPlan) {
+        return execute(session -> userDao.findUsersOrderedByBirthday(session, cursor, limit, fetchPlan));
+    }
+
+    public CompletableFuture<Slice<User>> findAllByCompanyName(String companyName, String cursor, int limit, FetchPlan fetchPlan) {
+        return execute(session -> userDao.findAllByCompanyName(session, companyName, cursor, limit, fetchPlan));
+    }
+
+    public CompletableFuture<List<Payment>> findAllPaymentsByCompanyName(String companyName) {
+        return execute(session -> userDao.findAllPaymentsByCompanyName(session, companyName));
+    }
+
+    public CompletableFuture<Double> findAveragePaymentAmountByFirstAndLastNames(String firstName, String lastName) {
+        return execute(session -> userDao.findAveragePaymentAmountByFirstAndLastNames(session, firstName, lastName));
+    }
+
+    public CompletableFuture<List<CompanyAvgPayment>> findCompanyAvgPayments() {
+        return execute(userDao::findCompanyAvgPayments);
+    }
+
+    public CompletableFuture<List<UserAvgPayment>> findUsersWithAvgPaymentAboveOverall() {
+        return execute(userDao::findUsersWithAvgPaymentAboveOverall);
+    }
+
+    public CompletableFuture<List<UserAvgPayment>> findAboveAverageEarners(double thresholdMultiplier, int limit,
+                                                                           String companyName) {
+        return execute(session -> userDao.findAboveAverageEarners(session, thresholdMultiplier, limit, companyName));
+    }
+
+    /**
+     * Выполняет {query} в отдельной сессии и транзакции с таймаутом по умолчанию
+     */
+    public <T> CompletableFuture<T> execute(Function<Session, T> query) {
+        return execute(query, timeout);
+    }
+
+    /**
+     * Выполняет {query} в отдельной сессии и транзакции. Запрос, не начавшийся до истечения {timeout}, не выполняется
+     */
+    public <T> CompletableFuture<T> execute(Function<Session, T> query, Duration timeout) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<Session> running = new AtomicReference<>();
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try (Session session = sessions.get()) {
+                    running.set(session);
+                    result.complete(inTransaction(session, query));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    running.set(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((value, error) -> {
+                    if (error instanceof TimeoutException) {
+                        cancel(running.get());
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Число запросов, ожидающих свободного потока
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Перестаёт принимать запросы и ждёт завершения уже принятых
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <T> T inTransaction(Session session, Function<Session, T> query) {
+        session.setDefaultReadOnly(true);
+        Transaction transaction = session.beginTransaction();
+        try {
+            T result = query.apply(session);
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    private static void cancel(Session session) {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.cancelQuery();
+        } catch (HibernateException e) {
+            log.debug("Unable to cancel timed out query", e);
+        }
+    }
+
+    private static class DaoThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "async-user-dao-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package by.itacademy.hibernate.dao;
+
+import by.itacademy.hibernate.entity.Chat;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ChatDao {
+
+    private static final ChatDao INSTANCE = new ChatDao();
+
+    /**
+     * Возвращает чат с указанным названием. Поиск идёт по natural id и обслуживается кэшем второго уровня
+     */
+    public Optional<Chat> findByName(Session session, String name) {
+        return session.bySimpleNaturalId(Chat.class)
+                .loadOptional(name);
+    }
+
+    public static ChatDao getInstance() {
+        return INSTANCE;
+    }
+}
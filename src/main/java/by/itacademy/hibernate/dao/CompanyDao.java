@@ -0,0 +1,26 @@
+package by.itacademy.hibernate.dao;
+
+import by.itacademy.hibernate.entity.Company;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class CompanyDao {
+
+    private static final CompanyDao INSTANCE = new CompanyDao();
+
+    /**
+     * Возвращает компанию с указанным названием. Поиск идёт по natural id и обслуживается кэшем второго уровня
+     */
+    public Optional<Company> findByName(Session session, String name) {
+        return session.bySimpleNaturalId(Company.class)
+                .loadOptional(name);
+    }
+
+    public static CompanyDao getInstance() {
+        return INSTANCE;
+    }
+}
@@ -0,0 +1,66 @@
+package by.itacademy.hibernate.dao;
+
+import by.itacademy.hibernate.entity.User;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.graph.RootGraph;
+import org.hibernate.query.Query;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Набор ассоциаций сотрудника, которые finder-ы {@link UserDao} загружают вместе с результатом.
+ * Ассоциации "к одному" присоединяются к основному запросу через entity graph, коллекции
+ * инициализируются пачками по {@code @BatchSize}: один запрос {@code where ... in (...)} на каждые
+ * 100 найденных сотрудников, без повторного выполнения основного запроса.
+ */
+public record FetchPlan(Set<UserAssociation> associations) {
+
+    public static final FetchPlan NONE = new FetchPlan(Collections.emptySet());
+
+    public FetchPlan {
+        Set<UserAssociation> copy = EnumSet.noneOf(UserAssociation.class);
+        copy.addAll(associations);
+        associations = Collections.unmodifiableSet(copy);
+    }
+
+    public static FetchPlan of(UserAssociation... associations) {
+        return new FetchPlan(Set.of(associations));
+    }
+
+    public boolean contains(UserAssociation association) {
+        return associations.contains(association);
+    }
+
+    List<User> list(Session session, Query<User> query) {
+        RootGraph<User> graph = session.createEntityGraph(User.class);
+        boolean joinsNeeded = false;
+        for (UserAssociation association : associations) {
+            if (!association.isCollection()) {
+                graph.addAttributeNodes(association.getAttributeName());
+                joinsNeeded = true;
+            }
+        }
+        if (joinsNeeded) {
+            query.applyGraph(graph, GraphSemantic.FETCH);
+        }
+        List<User> users = query.list();
+        initializeCollections(users);
+        return users;
+    }
+
+    void initializeCollections(List<User> users) {
+        for (User user : users) {
+            if (contains(UserAssociation.PAYMENTS)) {
+                Hibernate.initialize(user.getPayments());
+            }
+            if (contains(UserAssociation.USER_CHATS)) {
+                Hibernate.initialize(user.getUserChats());
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package by.itacademy.hibernate.dao;
+
+import by.itacademy.hibernate.dto.CompanyAvgPayment;
+import by.itacademy.hibernate.dto.UserAvgPayment;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.util.List;
+
+/**
+ * Средние размеры выплат по заранее посчитанным суммам и количествам (receiver_payment_stats, company_payment_stats)
+ * вместо полного прохода по таблице payment. Агрегаты поддерживаются триггерами PostgreSQL,
+ * на других СУБД используйте соответствующие методы {@link UserDao}
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class PaymentStatsDao {
+
+    private static final PaymentStatsDao INSTANCE = new PaymentStatsDao();
+
+    /**
+     * Возвращает среднюю зарплату сотрудника с указанными именем и фамилией
+     */
+    public Double findAveragePaymentAmountByFirstAndLastNames(Session session, String firstName, String lastName) {
+        Object[] totals = session.createQuery("""
+                        select sum(s.paymentSum), sum(s.paymentCount) from ReceiverPaymentStats s
+                        where s.receiver.personalInfo.firstname = :firstName
+                        and s.receiver.personalInfo.lastname = :lastName
+                        """, Object[].class)
+                .setParameter("firstName", firstName)
+                .setParameter("lastName", lastName)
+                .uniqueResult();
+        Long sum = (Long) totals[0];
+        Long count = (Long) totals[1];
+        return count == null || count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * Возвращает для каждой компании название и среднюю зарплату её сотрудников, упорядоченные по названию
+     */
+    public List<CompanyAvgPayment> findCompanyAvgPayments(Session session) {
+        return session.createQuery("""
+                        select new CompanyAvgPayment(c.name, cast(s.paymentSum as double) / s.paymentCount)
+                        from CompanyPaymentStats s
+                        join s.company c
+                        where s.paymentCount > 0
+                        order by c.name asc
+                        """, CompanyAvgPayment.class)
+                .list();
+    }
+
+    /**
+     * Возвращает сотрудников, чей средний размер выплат не меньше среднего размера выплат всех сотрудников,
+     * упорядоченных по имени
+     */
+    public List<UserAvgPayment> findUsersWithAvgPaymentAboveOverall(Session session) {
+        Object[] totals = session.createQuery(
+                        "select sum(s.paymentSum), sum(s.paymentCount) from ReceiverPaymentStats s", Object[].class)
+                .uniqueResult();
+        if (totals[1] == null) {
+            return List.of();
+        }
+        double overallAvg = (double) (Long) totals[0] / (Long) totals[1];
+        return session.createQuery("""
+                        select new UserAvgPayment(
+                            r.id, concat(r.personalInfo.firstname, ' ', r.personalInfo.lastname),
+                            cast(s.paymentSum as double) / s.paymentCount)
+                        from ReceiverPaymentStats s
+                        join s.receiver r
+                        where s.paymentCount > 0
+                        and s.paymentSum >= :overallAvg * s.paymentCount
+                        order by r.personalInfo.firstname asc, r.personalInfo.lastname asc
+                        """, UserAvgPayment.class)
+                .setParameter("overallAvg", overallAvg, StandardBasicTypes.DOUBLE)
+                .list();
+    }
+
+    public static PaymentStatsDao getInstance() {
+        return INSTANCE;
+    }
+}
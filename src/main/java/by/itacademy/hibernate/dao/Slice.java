@@ -0,0 +1,14 @@
+package by.itacademy.hibernate.dao;
+
+import java.util.List;
+
+/**
+ * Страница keyset-пагинации: найденные записи и курсор для запроса следующей страницы
+ * ({@code null}, если страница последняя)
+ */
+public record Slice<T>(List<T> content, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
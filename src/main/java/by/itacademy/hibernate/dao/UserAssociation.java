@@ -0,0 +1,27 @@
+package by.itacademy.hibernate.dao;
+
+/**
+ * Ленивые ассоциации {@link by.itacademy.hibernate.entity.User}, которые можно загрузить через {@link FetchPlan}
+ */
+public enum UserAssociation {
+    COMPANY("company", false),
+    PROFILE("profile", false),
+    USER_CHATS("userChats", true),
+    PAYMENTS("payments", true);
+
+    private final String attributeName;
+    private final boolean collection;
+
+    UserAssociation(String attributeName, boolean collection) {
+        this.attributeName = attributeName;
+        this.collection = collection;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    public boolean isCollection() {
+        return collection;
+    }
+}
@@ -1,53 +1,432 @@
 package by.itacademy.hibernate.dao;
 
 
+import by.itacademy.hibernate.dto.CompanyAgeBucket;
+import by.itacademy.hibernate.dto.CompanyAvgPayment;
+import by.itacademy.hibernate.dto.UserAvgPayment;
+import by.itacademy.hibernate.dto.UserSearchHit;
+import by.itacademy.hibernate.entity.Birthday;
+import by.itacademy.hibernate.entity.Company;
 import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.QCompany;
+import by.itacademy.hibernate.entity.QReceiverPaymentStats;
+import by.itacademy.hibernate.entity.QUser;
 import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.monitoring.DaoMetrics;
+import by.itacademy.hibernate.util.UserBirthdayDatabaseObject;
+import by.itacademy.hibernate.util.UserSearchDatabaseObject;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.Query;
+import org.hibernate.type.StandardBasicTypes;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class UserDao {
 
     private static final UserDao INSTANCE = new UserDao();
 
+    private static final String ABOVE_AVERAGE_EARNERS_SQL = """
+            with receiver_avg as (
+                select p.receiver_id,
+                       avg(p.amount) as avg_amount,
+                       sum(sum(p.amount)) over () / sum(count(*)) over () as overall_avg
+                from payment p
+                group by p.receiver_id
+            ), top_earners as (
+                select u.id, u.firstname, u.lastname, a.avg_amount
+                from receiver_avg a
+                join users u on u.id = a.receiver_id
+                left join company c on c.id = u.company_id
+                where a.avg_amount >= :thresholdMultiplier * a.overall_avg
+                %s
+                order by a.avg_amount desc, u.id asc
+                limit :limit
+            )
+            select id, firstname || ' ' || lastname as full_name, avg_amount
+            from top_earners
+            order by firstname asc, lastname asc
+            """;
+
+    private static final String SEARCH_BY_PREFIX_SQL = """
+            with candidates as (
+                (select id from users where lower(firstname) like :prefix order by lower(firstname) using ~<~ limit :limit)
+                union
+                (select id from users where lower(lastname) like :prefix order by lower(lastname) using ~<~ limit :limit)
+                union
+                (select id from users where lower(username) like :prefix order by lower(username) using ~<~ limit :limit)
+            )
+            select u.id, u.username, u.firstname || ' ' || u.lastname as full_name,
+                   1 + greatest(similarity(lower(u.firstname), :query),
+                                similarity(lower(u.lastname), :query),
+                                similarity(lower(u.username), :query)) as score
+            from users u
+            join candidates c on c.id = u.id
+            order by score desc, u.username asc
+            limit :limit
+            """;
+
+    private static final String SEARCH_BY_SIMILARITY_SQL = """
+            select u.id, u.username, u.firstname || ' ' || u.lastname as full_name,
+                   greatest(similarity(lower(u.firstname), :query),
+                            similarity(lower(u.lastname), :query),
+                            similarity(lower(u.username), :query)) as score
+            from users u
+            where lower(u.firstname) % :query
+               or lower(u.lastname) % :query
+               or lower(u.username) % :query
+            order by score desc, u.username asc
+            limit :limit
+            """;
+
+    private static final int MIN_SIMILARITY_QUERY_LENGTH = 3;
+
+    private static final String UPCOMING_BIRTHDAYS_SQL = """
+            select u.* from users u
+            where (extract(month from u.birth_date) * 100 + extract(day from u.birth_date)) between :from and :to
+               or (extract(month from u.birth_date) * 100 + extract(day from u.birth_date)) between :wrappedFrom and :wrappedTo
+            order by (extract(month from u.birth_date) * 100 + extract(day from u.birth_date)) < :from,
+                     (extract(month from u.birth_date) * 100 + extract(day from u.birth_date)),
+                     u.id
+            """;
+
+    private static final String AGE_BUCKETS_SQL = """
+            select c.name as company_name,
+                   cast(extract(year from age(:today, u.birth_date)) as integer) / :bucketSize * :bucketSize as from_age,
+                   count(*) as users_count
+            from users u
+            left join company c on c.id = u.company_id
+            where u.birth_date is not null
+            group by c.name, from_age
+            order by c.name nulls last, from_age
+            """;
+
+    private static final int MAX_UPCOMING_DAYS = 365;
+    private static final int FIRST_MONTH_DAY = 101;
+    private static final int LAST_MONTH_DAY = 1231;
+
+    private final CompanyDao companyDao = CompanyDao.getInstance();
+    private final DaoMetrics metrics = DaoMetrics.getInstance();
+
     /**
      * Возвращает всех сотрудников
      */
     public List<User> findAll(Session session) {
-        return session.createQuery("select u from User u", User.class)
-                .list();
+        return findAll(session, FetchPlan.NONE);
+    }
+
+    /**
+     * Возвращает всех сотрудников вместе с ассоциациями из {fetchPlan}
+     */
+    public List<User> findAll(Session session, FetchPlan fetchPlan) {
+        return metrics.record("UserDao.findAll", () -> fetchPlan.list(session, session.createNamedQuery("User.findAll", User.class)));
+    }
+
+    /**
+     * Возвращает сотрудников, удовлетворяющих {filter}, упорядоченных по id
+     */
+    public List<User> findAll(Session session, UserFilter filter) {
+        return findAll(session, filter, FetchPlan.NONE);
+    }
+
+    /**
+     * Возвращает сотрудников, удовлетворяющих {filter}, вместе с ассоциациями из {fetchPlan}
+     */
+    public List<User> findAll(Session session, UserFilter filter, FetchPlan fetchPlan) {
+        return findAll(session, filter, fetchPlan, LocalDate.now());
+    }
+
+    /**
+     * Возвращает сотрудников, удовлетворяющих {filter} (возраст считается на дату {today}), вместе с ассоциациями
+     * из {fetchPlan}. Запрос собирается Querydsl только из заданных условий: компания присоединяется, лишь если
+     * задано её название, средняя выплата проверяется подзапросом к receiver_payment_stats без чтения payment,
+     * возраст переводится в диапазон дат рождения. Значения условий передаются параметрами, а условия добавляются
+     * в постоянном порядке, поэтому фильтры с одним набором условий дают один и тот же HQL и переиспользуют
+     * разобранный план из кэша Hibernate и подготовленный запрос PostgreSQL
+     */
+    public List<User> findAll(Session session, UserFilter filter, FetchPlan fetchPlan, LocalDate today) {
+        return metrics.record("UserDao.findAllByFilter", () -> {
+            QUser user = QUser.user;
+            JPAQuery<User> query = new JPAQuery<User>(session).select(user).from(user);
+            if (filter.companyName() != null) {
+                QCompany company = QCompany.company;
+                query.innerJoin(user.company(), company).where(company.name.eq(filter.companyName()));
+            }
+            if (filter.firstName() != null) {
+                query.where(user.personalInfo().firstname.eq(filter.firstName()));
+            }
+            if (filter.lastName() != null) {
+                query.where(user.personalInfo().lastname.eq(filter.lastName()));
+            }
+            if (filter.maxAge() != null) {
+                query.where(user.personalInfo().birthDate.gt(new Birthday(today.minusYears(filter.maxAge() + 1L))));
+            }
+            if (filter.minAge() != null) {
+                query.where(user.personalInfo().birthDate.loe(new Birthday(today.minusYears(filter.minAge()))));
+            }
+            if (filter.role() != null) {
+                query.where(user.role.eq(filter.role()));
+            }
+            if (filter.minAveragePayment() != null) {
+                QReceiverPaymentStats stats = QReceiverPaymentStats.receiverPaymentStats;
+                query.where(JPAExpressions.selectOne()
+                        .from(stats)
+                        .where(stats.receiverId.eq(user.id),
+                                stats.paymentSum.goe(stats.paymentCount.castToNum(Double.class)
+                                        .multiply(filter.minAveragePayment())))
+                        .exists());
+            }
+            return fetchPlan.list(session, hibernateQuery(query.orderBy(user.id.asc())));
+        });
     }
 
     /**
      * Возвращает всех сотрудников с указанным именем
      */
     public List<User> findAllByFirstName(Session session, String firstName) {
-        return session.createQuery("select u from User u where u.personalInfo.firstname = :firstName", User.class)
-                .setParameter("firstName", firstName)
-                .list();
+        return findAllByFirstName(session, firstName, FetchPlan.NONE);
+    }
+
+    /**
+     * Возвращает всех сотрудников с указанным именем вместе с ассоциациями из {fetchPlan}
+     */
+    public List<User> findAllByFirstName(Session session, String firstName, FetchPlan fetchPlan) {
+        return metrics.record("UserDao.findAllByFirstName", () -> fetchPlan.list(session, session.createNamedQuery("User.findAllByFirstName", User.class)
+                .setParameter("firstName", firstName)));
     }
 
     /**
      * Возвращает первые {limit} сотрудников, упорядоченных по дате рождения (в порядке возрастания)
      */
     public List<User> findLimitedUsersOrderedByBirthday(Session session, int limit) {
-        return session.createQuery("select u from User u order by u.personalInfo.birthDate asc", User.class)
-                .setMaxResults(limit)
-                .list();
+        return findLimitedUsersOrderedByBirthday(session, limit, FetchPlan.NONE);
+    }
+
+    /**
+     * Возвращает первых {limit} сотрудников, упорядоченных по дате рождения, вместе с ассоциациями из {fetchPlan}
+     */
+    public List<User> findLimitedUsersOrderedByBirthday(Session session, int limit, FetchPlan fetchPlan) {
+        return metrics.record("UserDao.findLimitedUsersOrderedByBirthday", () -> fetchPlan.list(session, session.createNamedQuery("User.findAllOrderedByBirthday", User.class)
+                .setMaxResults(limit)));
     }
 
     /**
      * Возвращает всех сотрудников компании с указанным названием
      */
     public List<User> findAllByCompanyName(Session session, String companyName) {
-        return session.createQuery("select u from User u where u.company.name = :companyName", User.class)
+        return findAllByCompanyName(session, companyName, FetchPlan.NONE);
+    }
+
+    /**
+     * Возвращает всех сотрудников компании с указанным названием вместе с ассоциациями из {fetchPlan}
+     */
+    public List<User> findAllByCompanyName(Session session, String companyName, FetchPlan fetchPlan) {
+        return metrics.record("UserDao.findAllByCompanyName", () -> companyDao.findByName(session, companyName)
+                .map(company -> fetchPlan.list(session, session.createNamedQuery("User.findAllByCompany", User.class)
+                        .setParameter("company", company)))
+                .orElse(Collections.emptyList()));
+    }
+
+    /**
+     * Возвращает сотрудника с указанным username. Поиск идёт по natural id и обслуживается кэшем второго уровня
+     */
+    public Optional<User> findByUsername(Session session, String username) {
+        return metrics.record("UserDao.findByUsername", () -> session.bySimpleNaturalId(User.class)
+                .loadOptional(username));
+    }
+
+    /**
+     * Возвращает страницу из {limit} сотрудников, упорядоченных по дате рождения и id, следующих за курсором
+     * (keyset-пагинация по (birth_date, id), {@code cursor == null} - первая страница).
+     * Сотрудники без даты рождения в выборку не попадают
+     */
+    public Slice<User> findUsersOrderedByBirthday(Session session, String cursor, int limit) {
+        return findUsersOrderedByBirthday(session, cursor, limit, FetchPlan.NONE);
+    }
+
+    /**
+     * Возвращает страницу сотрудников, упорядоченных по дате рождения (см. выше), вместе с ассоциациями из {fetchPlan}
+     */
+    public Slice<User> findUsersOrderedByBirthday(Session session, String cursor, int limit, FetchPlan fetchPlan) {
+        return metrics.record("UserDao.findUsersOrderedByBirthday", () -> {
+            Query<User> query;
+            if (cursor == null) {
+                query = session.createNamedQuery("User.findFirstPageOrderedByBirthday", User.class);
+            } else {
+                String[] keys = CursorCodec.decode(cursor, 2);
+                query = session.createNamedQuery("User.findNextPageOrderedByBirthday", User.class)
+                        .setParameter("birthDate", new Birthday(LocalDate.parse(keys[0])))
+                        .setParameter("id", Long.valueOf(keys[1]));
+            }
+            return toSlice(session, query, limit, fetchPlan,
+                    user -> CursorCodec.encode(user.getPersonalInfo().getBirthDate().birthDate(), user.getId()));
+        });
+    }
+
+    /**
+     * Возвращает сотрудников, которым сегодня от {minAge} до {maxAge} полных лет включительно,
+     * упорядоченных по дате рождения
+     */
+    public List<User> findAllByAgeBetween(Session session, int minAge, int maxAge) {
+        return findAllByAgeBetween(session, minAge, maxAge, LocalDate.now());
+    }
+
+    /**
+     * Возвращает сотрудников, которым на дату {today} от {minAge} до {maxAge} полных лет включительно.
+     * Возраст переводится в диапазон дат рождения, поэтому запрос читает только этот диапазон индекса по birth_date
+     */
+    public List<User> findAllByAgeBetween(Session session, int minAge, int maxAge, LocalDate today) {
+        if (minAge < 0 || maxAge < minAge) {
+            throw new IllegalArgumentException("Age range must be non-negative and ordered");
+        }
+        return metrics.record("UserDao.findAllByAgeBetween", () -> session.createNamedQuery("User.findAllByBirthDateBetween", User.class)
+                .setParameter("bornAfter", new Birthday(today.minusYears(maxAge + 1L)))
+                .setParameter("bornUntil", new Birthday(today.minusYears(minAge)))
+                .list());
+    }
+
+    /**
+     * Возвращает сотрудников, у которых день рождения в ближайшие {days} дней, включая сегодня,
+     * в порядке наступления дня рождения
+     */
+    public List<User> findUpcomingBirthdays(Session session, int days) {
+        return findUpcomingBirthdays(session, days, LocalDate.now());
+    }
+
+    /**
+     * Возвращает сотрудников, у которых день рождения с {today} по {today + days} включительно,
+     * в порядке наступления дня рождения. Окно через новый год разбивается на два диапазона месяц-день,
+     * оба обслуживаются индексом {@link UserBirthdayDatabaseObject}.
+     * Родившиеся 29 февраля в невисокосный год попадают в окно, содержащее 28 февраля и 1 марта
+     */
+    @SuppressWarnings("unchecked")
+    public List<User> findUpcomingBirthdays(Session session, int days, LocalDate today) {
+        if (days < 0 || days > MAX_UPCOMING_DAYS) {
+            throw new IllegalArgumentException("Days must be between 0 and " + MAX_UPCOMING_DAYS);
+        }
+        int from = monthDay(today);
+        int to = monthDay(today.plusDays(days));
+        boolean wrapped = to < from || days == MAX_UPCOMING_DAYS;
+        return metrics.record("UserDao.findUpcomingBirthdays", () -> session.createNativeQuery(UPCOMING_BIRTHDAYS_SQL, User.class)
+                .setParameter("from", from)
+                .setParameter("to", wrapped ? LAST_MONTH_DAY : to)
+                // пустой диапазон, если окно не переходит через новый год
+                .setParameter("wrappedFrom", wrapped ? FIRST_MONTH_DAY : 1)
+                .setParameter("wrappedTo", wrapped ? to : 0)
+                .list());
+    }
+
+    /**
+     * Возвращает число сотрудников каждой компании по возрастным группам шириной {bucketSize} лет
+     * (fromAge - нижняя граница группы) на сегодня. Сотрудники без компании идут последними с companyName == null,
+     * без даты рождения - не учитываются
+     */
+    public List<CompanyAgeBucket> countUsersByCompanyAndAgeBucket(Session session, int bucketSize) {
+        return countUsersByCompanyAndAgeBucket(session, bucketSize, LocalDate.now());
+    }
+
+    /**
+     * Возвращает число сотрудников каждой компании по возрастным группам шириной {bucketSize} лет на дату {today}.
+     * Возраст и группировка считаются в базе, сотрудники в приложение не загружаются
+     */
+    @SuppressWarnings("unchecked")
+    public List<CompanyAgeBucket> countUsersByCompanyAndAgeBucket(Session session, int bucketSize, LocalDate today) {
+        if (bucketSize <= 0) {
+            throw new IllegalArgumentException("Bucket size must be positive");
+        }
+        return metrics.record("UserDao.countUsersByCompanyAndAgeBucket", () -> ((NativeQuery<Object[]>) session.createNativeQuery(AGE_BUCKETS_SQL))
+                .addScalar("company_name", StandardBasicTypes.STRING)
+                .addScalar("from_age", StandardBasicTypes.INTEGER)
+                .addScalar("users_count", StandardBasicTypes.LONG)
+                .setParameter("today", today)
+                .setParameter("bucketSize", bucketSize)
+                .list()
+                .stream()
+                .map(row -> new CompanyAgeBucket((String) row[0], (Integer) row[1], (Long) row[2]))
+                .toList());
+    }
+
+    /**
+     * Возвращает страницу из {limit} сотрудников компании с указанным названием, следующих за курсором
+     * (keyset-пагинация по (company, id), {@code cursor == null} - первая страница)
+     */
+    public Slice<User> findAllByCompanyName(Session session, String companyName, String cursor, int limit) {
+        return findAllByCompanyName(session, companyName, cursor, limit, FetchPlan.NONE);
+    }
+
+    /**
+     * Возвращает страницу сотрудников компании (см. выше) вместе с ассоциациями из {fetchPlan}
+     */
+    public Slice<User> findAllByCompanyName(Session session, String companyName, String cursor, int limit, FetchPlan fetchPlan) {
+        return metrics.record("UserDao.findAllByCompanyName(page)", () -> {
+            Optional<Company> company = companyDao.findByName(session, companyName);
+            if (company.isEmpty()) {
+                return new Slice<>(Collections.emptyList(), null);
+            }
+            long lastId = cursor == null ? 0L : Long.parseLong(CursorCodec.decode(cursor, 1)[0]);
+            Query<User> query = session.createNamedQuery("User.findNextPageByCompany", User.class)
+                    .setParameter("company", company.get())
+                    .setParameter("id", lastId);
+            return toSlice(session, query, limit, fetchPlan, user -> CursorCodec.encode(user.getId()));
+        });
+    }
+
+    /**
+     * Возвращает поток всех сотрудников, читаемых курсором БД порциями по {fetchSize} строк.
+     * Stateless-сессия не хранит загруженные сущности, поэтому расход памяти не зависит от размера таблицы.
+     * Поток нужно закрыть после использования
+     */
+    public Stream<User> streamAll(StatelessSession session, int fetchSize) {
+        return session.createNamedQuery("User.findAll", User.class)
+                .setFetchSize(fetchSize)
+                .stream();
+    }
+
+    /**
+     * Возвращает поток всех сотрудников компании с указанным названием (см. {@link #streamAll})
+     */
+    public Stream<User> streamAllByCompanyName(StatelessSession session, String companyName, int fetchSize) {
+        return session.createNamedQuery("User.findAllByCompanyName", User.class)
                 .setParameter("companyName", companyName)
-                .list();
+                .setFetchSize(fetchSize)
+                .stream();
+    }
+
+    /**
+     * Передаёт каждого сотрудника в {action}, читая их forward-only курсором порциями по {fetchSize} строк.
+     * После обработки сотрудник удаляется из сессии, поэтому в persistence context одновременно находится не более одного
+     */
+    public void scrollAll(Session session, int fetchSize, Consumer<User> action) {
+        metrics.record("UserDao.scrollAll", () -> {
+            try (ScrollableResults results = session.createNamedQuery("User.findAll", User.class)
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    User user = (User) results.get(0);
+                    action.accept(user);
+                    session.evict(user);
+                }
+            }
+        });
     }
 
     /**
@@ -55,59 +434,198 @@ public class UserDao {
      * упорядоченные по имени сотрудника, а затем по размеру выплаты
      */
     public List<Payment> findAllPaymentsByCompanyName(Session session, String companyName) {
-        return session.createQuery("""
-                        select p from User u
-                        join u.payments p
-                        where u.company.name = :companyName
-                        """, Payment.class)
-                .setParameter("companyName", companyName)
-                .list();
+        return metrics.record("UserDao.findAllPaymentsByCompanyName", () -> companyDao.findByName(session, companyName)
+                .map(company -> session.createNamedQuery("Payment.findAllByCompany", Payment.class)
+                        .setParameter("company", company)
+                        .list())
+                .orElse(Collections.emptyList()));
+    }
+
+    /**
+     * Передаёт в {action} все выплаты сотрудников компании с указанным названием вместе с получателем,
+     * упорядоченные по имени сотрудника, а затем по размеру выплаты. Выплаты читаются forward-only курсором
+     * порциями по {fetchSize} строк и сразу после обработки удаляются из сессии вместе с получателем,
+     * поэтому расход памяти не зависит от числа выплат (в отличие от {@link #findAllPaymentsByCompanyName})
+     */
+    public void scrollAllPaymentsByCompanyName(Session session, String companyName, int fetchSize, Consumer<Payment> action) {
+        metrics.record("UserDao.scrollAllPaymentsByCompanyName", () -> {
+            Optional<Company> company = companyDao.findByName(session, companyName);
+            if (company.isEmpty()) {
+                return;
+            }
+            try (ScrollableResults results = session.createNamedQuery("Payment.findAllByCompanyWithReceiver", Payment.class)
+                    .setParameter("company", company.get())
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    Payment payment = (Payment) results.get(0);
+                    action.accept(payment);
+                    session.evict(payment);
+                    session.evict(payment.getReceiver());
+                }
+            }
+        });
     }
 
     /**
      * Возвращает среднюю зарплату сотрудника с указанными именем и фамилией
      */
     public Double findAveragePaymentAmountByFirstAndLastNames(Session session, String firstName, String lastName) {
-        return session.createQuery("""
-                        select avg(p.amount) from Payment p
-                        where p.receiver.personalInfo.firstname = :firstName
-                        and p.receiver.personalInfo.lastname = :lastName
-                        """, Double.class)
+        return metrics.record("UserDao.findAveragePaymentAmountByFirstAndLastNames", () -> session.createNamedQuery("Payment.findAverageAmountByReceiverName", Double.class)
                 .setParameter("firstName", firstName)
                 .setParameter("lastName", lastName)
                 .stream()
                 .findFirst()
-                .orElse(0.0);
+                .orElse(0.0));
     }
 
     /**
      * Возвращает для каждой компании: название, среднюю зарплату всех её сотрудников. Компании упорядочены по названию.
      */
     public List<Object[]> findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName(Session session) {
-        return session.createQuery("""
-                        select p.receiver.company.name AS compName, avg(p.amount) from Payment p
-                        group by compName
-                        order by compName asc
-                        """, Object[].class)
-                .list();
+        return metrics.record("UserDao.findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName", () -> session.createNamedQuery("Payment.findCompanyNamesWithAverageAmount", Object[].class)
+                .list());
     }
 
     /**
      * Возвращает список: сотрудник (объект User), средний размер выплат, но только для тех сотрудников, чей средний размер выплат
      * больше среднего размера выплат всех сотрудников
      * Упорядочить по имени сотрудника
+     * (отчёт с порогом, top-N и фильтром по компании - {@link #findAboveAverageEarners})
      */
     public List<Object[]> isItPossible(Session session) {
-        return session.createQuery("""
-                        select r, avg(p.amount) from Payment p
-                        join p.receiver r
-                        group by r
-                        having avg(p.amount) >= (select avg(p.amount) from Payment p)
-                        """, Object[].class)
-                .list();
+        return metrics.record("UserDao.isItPossible", () -> session.createNamedQuery("Payment.findReceiversWithAverageAmountAboveOverall", Object[].class)
+                .list());
+    }
+
+    /**
+     * Возвращает для каждой компании название и среднюю зарплату её сотрудников, упорядоченные по названию.
+     * Проекция не создаёт сущностей, поэтому persistence context и dirty checking не задействуются
+     */
+    public List<CompanyAvgPayment> findCompanyAvgPayments(Session session) {
+        return metrics.record("UserDao.findCompanyAvgPayments", () -> session.createNamedQuery("Payment.findCompanyAvgPayments", CompanyAvgPayment.class)
+                .list());
+    }
+
+    /**
+     * Возвращает id, полное имя и средний размер выплат сотрудников, чей средний размер выплат
+     * не меньше среднего размера выплат всех сотрудников, упорядоченные по имени сотрудника.
+     * В отличие от {@link #isItPossible} не загружает сущности User
+     */
+    public List<UserAvgPayment> findUsersWithAvgPaymentAboveOverall(Session session) {
+        return metrics.record("UserDao.findUsersWithAvgPaymentAboveOverall", () -> session.createNamedQuery("Payment.findUserAvgPaymentsAboveOverall", UserAvgPayment.class)
+                .list());
+    }
+
+    /**
+     * Возвращает не более {limit} сотрудников с наибольшим средним размером выплат среди тех, чей средний размер
+     * выплат не меньше среднего размера выплат всех сотрудников, умноженного на {thresholdMultiplier}
+     */
+    public List<UserAvgPayment> findAboveAverageEarners(Session session, double thresholdMultiplier, int limit) {
+        return findAboveAverageEarners(session, thresholdMultiplier, limit, null);
+    }
+
+    /**
+     * Возвращает не более {limit} сотрудников компании {companyName} (любой, если null) с наибольшим средним
+     * размером выплат среди тех, чей средний размер выплат не меньше среднего размера выплат всех сотрудников,
+     * умноженного на {thresholdMultiplier}. Результат упорядочен по имени сотрудника.
+     * Общее среднее считается оконной функцией в том же проходе по payment, что и средние по сотрудникам,
+     * а группировка идёт только по receiver_id, а не по всем колонкам users, как в {@link #isItPossible}
+     */
+    @SuppressWarnings("unchecked")
+    public List<UserAvgPayment> findAboveAverageEarners(Session session, double thresholdMultiplier, int limit,
+                                                        String companyName) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return metrics.record("UserDao.findAboveAverageEarners", () -> {
+            NativeQuery<Object[]> query = session.createNativeQuery(ABOVE_AVERAGE_EARNERS_SQL.formatted(
+                            companyName == null ? "" : "and c.name = :companyName"))
+                    .addScalar("id", StandardBasicTypes.LONG)
+                    .addScalar("full_name", StandardBasicTypes.STRING)
+                    .addScalar("avg_amount", StandardBasicTypes.DOUBLE)
+                    .setParameter("thresholdMultiplier", BigDecimal.valueOf(thresholdMultiplier))
+                    .setParameter("limit", limit);
+            if (companyName != null) {
+                query.setParameter("companyName", companyName);
+            }
+            return query.list().stream()
+                    .map(row -> new UserAvgPayment((Long) row[0], (String) row[1], (Double) row[2]))
+                    .toList();
+        });
+    }
+
+    /**
+     * Возвращает не более {limit} сотрудников, у которых имя, фамилия или username начинается с {query}
+     * или похожи на него (pg_trgm), без учёта регистра. Совпадения по префиксу идут первыми (оценка 1 + сходство),
+     * за ними - похожие (оценка - сходство). Префиксы берутся из btree-индексов {@link UserSearchDatabaseObject}
+     * в порядке ключа, поэтому время не зависит от числа совпадений. Нечёткий поиск по GIN-индексам дороже
+     * и выполняется, только если совпадений по префиксу меньше {limit}, а запрос не короче 3 символов
+     */
+    public List<UserSearchHit> searchByName(Session session, String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        String normalized = query == null ? "" : query.strip().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return metrics.record("UserDao.searchByName", () -> {
+            Map<Long, UserSearchHit> hits = new LinkedHashMap<>();
+            searchHits(session.createNativeQuery(SEARCH_BY_PREFIX_SQL)
+                    .setParameter("prefix", escapeLike(normalized) + "%")
+                    .setParameter("query", normalized)
+                    .setParameter("limit", limit))
+                    .forEach(hit -> hits.put(hit.id(), hit));
+            if (hits.size() < limit && normalized.length() >= MIN_SIMILARITY_QUERY_LENGTH) {
+                searchHits(session.createNativeQuery(SEARCH_BY_SIMILARITY_SQL)
+                        .setParameter("query", normalized)
+                        .setParameter("limit", limit)).stream()
+                        .filter(hit -> hits.size() < limit)
+                        .forEach(hit -> hits.putIfAbsent(hit.id(), hit));
+            }
+            return List.copyOf(hits.values());
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<UserSearchHit> searchHits(NativeQuery<?> query) {
+        return ((NativeQuery<Object[]>) query)
+                .addScalar("id", StandardBasicTypes.LONG)
+                .addScalar("username", StandardBasicTypes.STRING)
+                .addScalar("full_name", StandardBasicTypes.STRING)
+                .addScalar("score", StandardBasicTypes.DOUBLE)
+                .list()
+                .stream()
+                .map(row -> new UserSearchHit((Long) row[0], (String) row[1], (String) row[2], (Double) row[3]))
+                .toList();
+    }
+
+    private static int monthDay(LocalDate date) {
+        return date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static Slice<User> toSlice(Session session, Query<User> query, int limit, FetchPlan fetchPlan,
+                                       Function<User, String> cursorOf) {
+        List<User> rows = fetchPlan.list(session, query.setMaxResults(limit + 1));
+        if (rows.size() <= limit) {
+            return new Slice<>(rows, null);
+        }
+        List<User> content = rows.subList(0, limit);
+        return new Slice<>(content, cursorOf.apply(content.get(limit - 1)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Query<T> hibernateQuery(JPAQuery<T> query) {
+        return query.createQuery().unwrap(Query.class);
     }
 
     public static UserDao getInstance() {
         return INSTANCE;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package by.itacademy.hibernate.dao;
+
+import by.itacademy.hibernate.entity.Role;
+import lombok.Builder;
+
+/**
+ * Условия выборки сотрудников для {@link UserDao#findAll(org.hibernate.Session, UserFilter)}.
+ * Незаданные (null) условия не участвуют в запросе, заданные объединяются через and.
+ * Возраст - полных лет включительно, минимальная средняя выплата сравнивается со статистикой receiver_payment_stats
+ */
+@Builder
+public record UserFilter(String firstName,
+                         String lastName,
+                         String companyName,
+                         Integer minAge,
+                         Integer maxAge,
+                         Role role,
+                         Double minAveragePayment) {
+
+    public static final UserFilter ANY = UserFilter.builder().build();
+
+    public UserFilter {
+        if (minAge != null && minAge < 0 || maxAge != null && maxAge < 0) {
+            throw new IllegalArgumentException("Age must be non-negative");
+        }
+        if (minAge != null && maxAge != null && maxAge < minAge) {
+            throw new IllegalArgumentException("Age range must be ordered");
+        }
+    }
+}
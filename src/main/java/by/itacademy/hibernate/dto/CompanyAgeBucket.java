@@ -0,0 +1,4 @@
+package by.itacademy.hibernate.dto;
+
+public record CompanyAgeBucket(String companyName, Integer fromAge, Long count) {
+}
@@ -0,0 +1,4 @@
+package by.itacademy.hibernate.dto;
+
+public record CompanyAvgPayment(String name, Double avg) {
+}
@@ -0,0 +1,4 @@
+package by.itacademy.hibernate.dto;
+
+public record UserAvgPayment(Long id, String fullName, Double avg) {
+}
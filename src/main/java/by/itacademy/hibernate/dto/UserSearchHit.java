@@ -0,0 +1,4 @@
+package by.itacademy.hibernate.dto;
+
+public record UserSearchHit(Long id, String username, String fullName, Double score) {
+}
@@ -3,10 +3,11 @@ package by.itacademy.hibernate.entity;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
-public record Birthday(LocalDate birthDate) implements Comparable<Birthday> {
+public record Birthday(LocalDate birthDate) implements Comparable<Birthday>, Serializable {
     public long getAge() {
         return ChronoUnit.YEARS.between(birthDate, LocalDate.now());
     }
@@ -5,6 +5,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import java.util.HashSet;
@@ -15,12 +20,17 @@ import java.util.Set;
 @ToString(exclude = "users")
 @Builder
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "company")
+@NaturalIdCache(region = "company-natural-id")
+@BatchSize(size = 100)
 @Table(name = "company")
 public class Company {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "companyIdGenerator")
+    @SequenceGenerator(name = "companyIdGenerator", sequenceName = "company_seq", allocationSize = 50)
     private Integer id;
 
+    @NaturalId
     @Column(nullable = false, unique = true)
     private String name;
 
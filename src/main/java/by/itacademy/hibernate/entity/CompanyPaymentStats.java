@@ -0,0 +1,34 @@
+package by.itacademy.hibernate.entity;
+
+import lombok.Data;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+
+/**
+ * Сумма и количество выплат сотрудникам компании. Поддерживается триггерами на таблицах payment и users
+ * (см. {@link by.itacademy.hibernate.util.PaymentStatsDatabaseObject}), из приложения не изменяется
+ */
+@Data
+@ToString(exclude = "company")
+@Entity
+@Immutable
+@Table(name = "company_payment_stats")
+public class CompanyPaymentStats {
+
+    @Id
+    @Column(name = "company_id")
+    private Integer companyId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "company_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private Company company;
+
+    @Column(nullable = false)
+    private Long paymentSum;
+
+    @Column(nullable = false)
+    private Long paymentCount;
+}
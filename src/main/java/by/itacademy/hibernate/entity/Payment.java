@@ -5,13 +5,59 @@ import lombok.Data;
 
 import javax.persistence.*;
 
+@NamedQuery(name = "Payment.findAllByCompany", query = """
+        select p from User u
+        join u.payments p
+        where u.company = :company
+        """)
+@NamedQuery(name = "Payment.findAllByCompanyWithReceiver", query = """
+        select p from Payment p
+        join fetch p.receiver r
+        where r.company = :company
+        order by r.personalInfo.firstname asc, r.personalInfo.lastname asc, p.amount asc
+        """)
+@NamedQuery(name = "Payment.findAverageAmountByReceiverName", query = """
+        select avg(p.amount) from Payment p
+        where p.receiver.personalInfo.firstname = :firstName
+        and p.receiver.personalInfo.lastname = :lastName
+        """)
+@NamedQuery(name = "Payment.findCompanyNamesWithAverageAmount", query = """
+        select p.receiver.company.name AS compName, avg(p.amount) from Payment p
+        group by compName
+        order by compName asc
+        """)
+@NamedQuery(name = "Payment.findReceiversWithAverageAmountAboveOverall", query = """
+        select r, avg(p.amount) from Payment p
+        join p.receiver r
+        group by r
+        having avg(p.amount) >= (select avg(p.amount) from Payment p)
+        """)
+@NamedQuery(name = "Payment.findCompanyAvgPayments", query = """
+        select new CompanyAvgPayment(c.name, avg(p.amount))
+        from Payment p
+        join p.receiver r
+        join r.company c
+        group by c.name
+        order by c.name asc
+        """)
+@NamedQuery(name = "Payment.findUserAvgPaymentsAboveOverall", query = """
+        select new UserAvgPayment(
+            r.id, concat(r.personalInfo.firstname, ' ', r.personalInfo.lastname), avg(p.amount))
+        from Payment p
+        join p.receiver r
+        group by r.id, r.personalInfo.firstname, r.personalInfo.lastname
+        having avg(p.amount) >= (select avg(op.amount) from Payment op)
+        order by r.personalInfo.firstname asc, r.personalInfo.lastname asc
+        """)
 @Data
 @Builder
 @Entity
+@Table(indexes = @Index(name = "payment_receiver_id_amount_idx", columnList = "receiver_id, amount"))
 public class Payment implements BaseEntity<Long> {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "paymentIdGenerator")
+    @SequenceGenerator(name = "paymentIdGenerator", sequenceName = "payment_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
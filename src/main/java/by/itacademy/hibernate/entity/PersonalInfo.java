@@ -1,11 +1,11 @@
 package by.itacademy.hibernate.entity;
 
-import by.itacademy.hibernate.convertor.BirthdayConvertor;
+import by.itacademy.hibernate.type.BirthdayType;
 import lombok.Builder;
 import lombok.Data;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.Column;
-import javax.persistence.Convert;
 import javax.persistence.Embeddable;
 import java.io.Serial;
 import java.io.Serializable;
@@ -20,7 +20,7 @@ public class PersonalInfo implements Serializable {
 
     private String firstname;
     private String lastname;
-    @Convert(converter = BirthdayConvertor.class)
+    @Type(type = "by.itacademy.hibernate.type.BirthdayType")
     @Column(name = "birth_date")
     private Birthday birthDate;
 
@@ -8,7 +8,7 @@ import javax.persistence.*;
 @Data
 @Builder
 @Entity
-@Table(schema = "public")
+@Table(schema = "public", indexes = @Index(name = "profile_user_id_idx", columnList = "user_id"))
 public class Profile {
 
 
@@ -0,0 +1,34 @@
+package by.itacademy.hibernate.entity;
+
+import lombok.Data;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+
+/**
+ * Сумма и количество выплат сотрудника. Поддерживается триггерами на таблице payment
+ * (см. {@link by.itacademy.hibernate.util.PaymentStatsDatabaseObject}), из приложения не изменяется
+ */
+@Data
+@ToString(exclude = "receiver")
+@Entity
+@Immutable
+@Table(name = "receiver_payment_stats")
+public class ReceiverPaymentStats {
+
+    @Id
+    @Column(name = "receiver_id")
+    private Long receiverId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "receiver_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private User receiver;
+
+    @Column(nullable = false)
+    private Long paymentSum;
+
+    @Column(nullable = false)
+    private Long paymentCount;
+}
@@ -4,27 +4,68 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 
+@NamedQuery(name = "User.findAll", query = "select u from User u")
+@NamedQuery(name = "User.findAllByFirstName", query = "select u from User u where u.personalInfo.firstname = :firstName")
+@NamedQuery(name = "User.findAllOrderedByBirthday", query = "select u from User u order by u.personalInfo.birthDate asc")
+@NamedQuery(name = "User.findAllByCompany", query = "select u from User u where u.company = :company")
+@NamedQuery(name = "User.findAllByCompanyName", query = "select u from User u where u.company.name = :companyName")
+@NamedQuery(name = "User.findFirstPageOrderedByBirthday", query = """
+        select u from User u
+        where u.personalInfo.birthDate is not null
+        order by u.personalInfo.birthDate asc, u.id asc
+        """)
+@NamedQuery(name = "User.findNextPageOrderedByBirthday", query = """
+        select u from User u
+        where (u.personalInfo.birthDate, u.id) > (:birthDate, :id)
+        order by u.personalInfo.birthDate asc, u.id asc
+        """)
+@NamedQuery(name = "User.findAllByBirthDateBetween", query = """
+        select u from User u
+        where u.personalInfo.birthDate > :bornAfter and u.personalInfo.birthDate <= :bornUntil
+        order by u.personalInfo.birthDate asc, u.id asc
+        """)
+@NamedQuery(name = "User.findNextPageByCompany", query = """
+        select u from User u
+        where u.company = :company
+        and u.id > :id
+        order by u.id asc
+        """)
 @Data
 @EqualsAndHashCode(of = "username")
 @ToString(exclude = {"company", "profile", "userChats", "payments"})
 @Builder
 @Entity
-@Table(name = "users", schema = "public")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
+@NaturalIdCache(region = "user-natural-id")
+@Table(name = "users", schema = "public", indexes = {
+        @Index(name = "users_company_id_idx", columnList = "company_id, id"),
+        @Index(name = "users_firstname_lastname_idx", columnList = "firstname, lastname"),
+        @Index(name = "users_birth_date_idx", columnList = "birth_date, id")
+})
 public class User implements Comparable<User>, BaseEntity<Long> {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "userIdGenerator")
+    @SequenceGenerator(name = "userIdGenerator", sequenceName = "users_seq", schema = "public", allocationSize = 50)
     private Long id;
 
     @AttributeOverride(name = "birthDate", column = @Column(name = "birth_date"))
     private PersonalInfo personalInfo;
 
+    @NaturalId(mutable = true)
     @Column(unique = true)
     private String username;
 
@@ -40,14 +81,17 @@ public class User implements Comparable<User>, BaseEntity<Long> {
             cascade = CascadeType.ALL,
             fetch = FetchType.LAZY
     )
+    @LazyToOne(LazyToOneOption.NO_PROXY)
     private Profile profile;
 
     @Builder.Default
     @OneToMany(mappedBy = "user")
+    @BatchSize(size = 100)
     private List<UserChat> userChats = new ArrayList<>();
 
     @Builder.Default
     @OneToMany(mappedBy = "receiver")
+    @BatchSize(size = 100)
     private List<Payment> payments = new ArrayList<>();
 
     public User(Long id, PersonalInfo personalInfo, String username, Role role, Company company, Profile profile, List<UserChat> userChats, List<Payment> payments) {
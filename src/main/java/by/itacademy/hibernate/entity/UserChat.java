@@ -10,11 +10,15 @@ import javax.persistence.*;
 @Data
 @Builder
 @Entity
-@Table(name = "users_chat", schema = "public")
+@Table(name = "users_chat", schema = "public", indexes = {
+        @Index(name = "users_chat_user_id_idx", columnList = "user_id"),
+        @Index(name = "users_chat_chat_id_idx", columnList = "chat_id")
+})
 public class UserChat extends AuditableEntity<Long> {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "userChatIdGenerator")
+    @SequenceGenerator(name = "userChatIdGenerator", sequenceName = "users_chat_seq", schema = "public", allocationSize = 50)
     private Long id;
 
     @ManyToOne
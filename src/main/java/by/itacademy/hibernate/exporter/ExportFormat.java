@@ -0,0 +1,88 @@
+package by.itacademy.hibernate.exporter;
+
+import by.itacademy.hibernate.entity.Payment;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Формат выгрузки выплат {@link PaymentExporter}. Каждая выплата - одна строка с id, суммой,
+ * полным именем и username получателя
+ */
+public enum ExportFormat {
+    /**
+     * Первая строка - заголовок {@code id,amount,receiver_full_name,receiver_username}, значения экранируются по RFC 4180
+     */
+    CSV {
+        @Override
+        void writeHeader(Writer writer) throws IOException {
+            writer.write("id,amount,receiver_full_name,receiver_username\n");
+        }
+
+        @Override
+        void write(Writer writer, Payment payment) throws IOException {
+            writer.write(String.valueOf(payment.getId()));
+            writer.write(',');
+            writer.write(String.valueOf(payment.getAmount()));
+            writer.write(',');
+            writer.write(csv(payment.getReceiver().fullName()));
+            writer.write(',');
+            writer.write(csv(payment.getReceiver().getUsername()));
+            writer.write('\n');
+        }
+    },
+    /**
+     * Один JSON-объект {@code {"id":..,"amount":..,"receiverFullName":"..","receiverUsername":".."}} на строку
+     */
+    NDJSON {
+        @Override
+        void writeHeader(Writer writer) {
+        }
+
+        @Override
+        void write(Writer writer, Payment payment) throws IOException {
+            writer.write("{\"id\":");
+            writer.write(String.valueOf(payment.getId()));
+            writer.write(",\"amount\":");
+            writer.write(String.valueOf(payment.getAmount()));
+            writer.write(",\"receiverFullName\":");
+            writer.write(json(payment.getReceiver().fullName()));
+            writer.write(",\"receiverUsername\":");
+            writer.write(json(payment.getReceiver().getUsername()));
+            writer.write("}\n");
+        }
+    };
+
+    abstract void writeHeader(Writer writer) throws IOException;
+
+    abstract void write(Writer writer, Payment payment) throws IOException;
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String json(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append("\\u%04x".formatted((int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+}
@@ -0,0 +1,82 @@
+package by.itacademy.hibernate.exporter;
+
+import by.itacademy.hibernate.dao.UserDao;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Потоковая выгрузка выплат сотрудников компании в {@link ExportFormat} через
+ * {@link UserDao#scrollAllPaymentsByCompanyName}: строки читаются серверным курсором порциями по {fetchSize},
+ * каждая выплата пишется в поток и сразу удаляется из сессии, поэтому расход памяти не зависит от размера выгрузки
+ */
+@Slf4j
+public class PaymentExporter {
+
+    public static final int DEFAULT_FETCH_SIZE = 1_000;
+
+    private final UserDao userDao = UserDao.getInstance();
+    private final SessionFactory sessionFactory;
+    private final int fetchSize;
+
+    public PaymentExporter(SessionFactory sessionFactory) {
+        this(sessionFactory, DEFAULT_FETCH_SIZE);
+    }
+
+    public PaymentExporter(SessionFactory sessionFactory, int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive");
+        }
+        this.sessionFactory = sessionFactory;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Записывает в {out} все выплаты сотрудников компании с указанным названием (UTF-8) и возвращает их число.
+     * Поток сбрасывается, но не закрывается
+     */
+    public long export(String companyName, OutputStream out, ExportFormat format) throws IOException {
+        long started = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        format.writeHeader(writer);
+
+        long[] rows = {0};
+        @Cleanup Session session = sessionFactory.openSession();
+        // курсор с fetch size PostgreSQL открывает только внутри транзакции
+        Transaction transaction = session.beginTransaction();
+        try {
+            userDao.scrollAllPaymentsByCompanyName(session, companyName, fetchSize, payment -> {
+                try {
+                    format.write(writer, payment);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            transaction.commit();
+        } catch (UncheckedIOException e) {
+            transaction.rollback();
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+        writer.flush();
+
+        log.info("Exported {} payments of {} as {} in {} ms",
+                rows[0], companyName, format, (System.nanoTime() - started) / 1_000_000);
+        return rows[0];
+    }
+}
@@ -0,0 +1,90 @@
+package by.itacademy.hibernate.importer;
+
+import by.itacademy.hibernate.entity.Company;
+import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.entity.UserChat;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+import java.time.Duration;
+
+/**
+ * Массовая загрузка сущностей через {@link StatelessSession}: без persistence context и dirty checking,
+ * INSERT-ы отправляются JDBC-пачками по {batchSize}, транзакция фиксируется каждые {chunkSize} строк.
+ * Идентификаторы выдаются pooled-последовательностями, поэтому на каждую строку не нужен отдельный запрос к БД.
+ * <p>
+ * Каскады и коллекции не обрабатываются: связанные сущности (компания сотрудника, получатель выплаты)
+ * должны быть загружены раньше. При ошибке откатывается только текущая порция, предыдущие уже зафиксированы.
+ */
+@Slf4j
+public class BulkImporter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    private final SessionFactory sessionFactory;
+    private final int chunkSize;
+    private final int batchSize;
+
+    public BulkImporter(SessionFactory sessionFactory) {
+        this(sessionFactory, DEFAULT_CHUNK_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    public BulkImporter(SessionFactory sessionFactory, int chunkSize, int batchSize) {
+        if (chunkSize <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Chunk and batch sizes must be positive");
+        }
+        this.sessionFactory = sessionFactory;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+    }
+
+    public ImportResult importCompanies(Iterable<Company> companies) {
+        return importAll(Company.class, companies);
+    }
+
+    public ImportResult importUsers(Iterable<User> users) {
+        return importAll(User.class, users);
+    }
+
+    public ImportResult importPayments(Iterable<Payment> payments) {
+        return importAll(Payment.class, payments);
+    }
+
+    public ImportResult importUserChats(Iterable<UserChat> userChats) {
+        return importAll(UserChat.class, userChats);
+    }
+
+    public <T> ImportResult importAll(Class<T> entityType, Iterable<? extends T> entities) {
+        long started = System.nanoTime();
+        long rows = 0;
+
+        @Cleanup StatelessSession session = sessionFactory.openStatelessSession();
+        session.setJdbcBatchSize(batchSize);
+        Transaction transaction = session.beginTransaction();
+        try {
+            for (T entity : entities) {
+                session.insert(entityType.getName(), entity);
+                if (++rows % chunkSize == 0) {
+                    transaction.commit();
+                    log.debug("{}: {} rows committed", entityType.getSimpleName(), rows);
+                    transaction = session.beginTransaction();
+                }
+            }
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+
+        ImportResult result = new ImportResult(entityType.getSimpleName(), rows, Duration.ofNanos(System.nanoTime() - started));
+        log.info("Imported {}", result);
+        return result;
+    }
+}
@@ -0,0 +1,19 @@
+package by.itacademy.hibernate.importer;
+
+import java.time.Duration;
+
+/**
+ * Итог загрузки: сколько строк какой сущности загружено и за какое время
+ */
+public record ImportResult(String entityName, long rows, Duration elapsed) {
+
+    public double rowsPerSecond() {
+        long nanos = Math.max(elapsed.toNanos(), 1L);
+        return rows * 1_000_000_000.0 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "%s: %d rows in %d ms (%.0f rows/s)".formatted(entityName, rows, elapsed.toMillis(), rowsPerSecond());
+    }
+}
@@ -0,0 +1,198 @@
+package by.itacademy.hibernate.importer;
+
+import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.importer.PaymentRecordReader.PaymentRecord;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Загрузка выплат через PostgreSQL COPY: записи {@code username,amount} читаются порциями по {chunkSize},
+ * получатели ищутся по username пачками, строки с неизвестным получателем или битыми данными отклоняются.
+ * Если соединение не поддерживает COPY (например, H2), порция загружается через {@link BulkImporter}.
+ * <p>
+ * Каждая порция фиксируется отдельной транзакцией, после неё вызывается {progressListener}.
+ * Найденные id получателей кэшируются в пределах экземпляра импортёра.
+ */
+@Slf4j
+public class PaymentCopyImporter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 50_000;
+    public static final int MAX_REPORTED_REJECTIONS = 1_000;
+
+    private static final int RESOLVE_BATCH_SIZE = 1_000;
+    private static final int MAX_CACHED_RECEIVERS = 100_000;
+    private static final String COPY_SQL = "COPY payment (id, amount, receiver_id) FROM STDIN WITH (FORMAT csv)";
+
+    private final SessionFactory sessionFactory;
+    private final int chunkSize;
+    private final Consumer<PaymentIngestResult> progressListener;
+    private final Map<String, Long> receiverIds = new HashMap<>();
+
+    public PaymentCopyImporter(SessionFactory sessionFactory) {
+        this(sessionFactory, DEFAULT_CHUNK_SIZE, progress -> log.info("{}", progress));
+    }
+
+    public PaymentCopyImporter(SessionFactory sessionFactory, int chunkSize, Consumer<PaymentIngestResult> progressListener) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.sessionFactory = sessionFactory;
+        this.chunkSize = chunkSize;
+        this.progressListener = progressListener;
+    }
+
+    public PaymentIngestResult ingest(InputStream in, PaymentFormat format) {
+        IngestState state = new IngestState(isCopySupported());
+        PaymentRecordReader reader = new PaymentRecordReader(in, format);
+
+        List<PaymentRecord> chunk = new ArrayList<>(chunkSize);
+        PaymentRecord paymentRecord;
+        while ((paymentRecord = reader.next()) != null) {
+            if (paymentRecord.error() != null) {
+                state.reject(paymentRecord.recordNumber(), paymentRecord.error());
+                continue;
+            }
+            chunk.add(paymentRecord);
+            if (chunk.size() == chunkSize) {
+                writeChunk(chunk, state);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, state);
+        }
+
+        PaymentIngestResult result = state.snapshot();
+        log.info("Ingested {}", result);
+        return result;
+    }
+
+    private void writeChunk(List<PaymentRecord> chunk, IngestState state) {
+        @Cleanup Session session = sessionFactory.openSession();
+        // без COPY получатели ищутся вне транзакции, выплаты сохраняет BulkImporter в своих транзакциях
+        Transaction transaction = state.copyUsed ? session.beginTransaction() : null;
+        try {
+            resolveReceivers(session, chunk);
+            List<Payment> payments = new ArrayList<>(chunk.size());
+            for (PaymentRecord paymentRecord : chunk) {
+                Long receiverId = receiverIds.get(paymentRecord.username());
+                if (receiverId == null) {
+                    state.reject(paymentRecord.recordNumber(), "Unknown receiver: " + paymentRecord.username());
+                } else {
+                    payments.add(Payment.builder()
+                            .amount(paymentRecord.amount())
+                            .receiver(User.builder().id(receiverId).build())
+                            .build());
+                }
+            }
+            if (transaction != null) {
+                copy(session, payments);
+                transaction.commit();
+            } else {
+                new BulkImporter(sessionFactory, chunkSize, BulkImporter.DEFAULT_BATCH_SIZE).importPayments(payments);
+            }
+            state.accepted += payments.size();
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+        progressListener.accept(state.snapshot());
+    }
+
+    private void resolveReceivers(Session session, List<PaymentRecord> chunk) {
+        Set<String> unresolved = new LinkedHashSet<>();
+        for (PaymentRecord paymentRecord : chunk) {
+            if (!receiverIds.containsKey(paymentRecord.username())) {
+                unresolved.add(paymentRecord.username());
+            }
+        }
+        if (receiverIds.size() + unresolved.size() > MAX_CACHED_RECEIVERS) {
+            receiverIds.clear();
+            chunk.forEach(paymentRecord -> unresolved.add(paymentRecord.username()));
+        }
+
+        List<String> usernames = new ArrayList<>(unresolved);
+        for (int from = 0; from < usernames.size(); from += RESOLVE_BATCH_SIZE) {
+            List<String> batch = usernames.subList(from, Math.min(from + RESOLVE_BATCH_SIZE, usernames.size()));
+            session.createQuery("select u.username, u.id from User u where u.username in :usernames", Object[].class)
+                    .setParameterList("usernames", batch)
+                    .list()
+                    .forEach(row -> receiverIds.put((String) row[0], (Long) row[1]));
+        }
+    }
+
+    private void copy(Session session, List<Payment> payments) {
+        IdentifierGenerator idGenerator = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getMetamodel()
+                .entityPersister(Payment.class)
+                .getIdentifierGenerator();
+        StringBuilder rows = new StringBuilder(payments.size() * 24);
+        for (Payment payment : payments) {
+            Object id = idGenerator.generate((SharedSessionContractImplementor) session, payment);
+            rows.append(id).append(',')
+                    .append(payment.getAmount()).append(',')
+                    .append(payment.getReceiver().getId()).append('\n');
+        }
+        session.doWork(connection -> {
+            try {
+                connection.unwrap(PGConnection.class)
+                        .getCopyAPI()
+                        .copyIn(COPY_SQL, new StringReader(rows.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private boolean isCopySupported() {
+        @Cleanup Session session = sessionFactory.openSession();
+        return session.doReturningWork(connection -> connection.isWrapperFor(PGConnection.class));
+    }
+
+    private static class IngestState {
+        private final long started = System.nanoTime();
+        private final boolean copyUsed;
+        private final List<RejectedPayment> rejected = new ArrayList<>();
+        private long accepted;
+        private long rejectedCount;
+
+        private IngestState(boolean copyUsed) {
+            this.copyUsed = copyUsed;
+        }
+
+        private void reject(long recordNumber, String reason) {
+            rejectedCount++;
+            if (rejected.size() < MAX_REPORTED_REJECTIONS) {
+                rejected.add(new RejectedPayment(recordNumber, reason));
+            }
+        }
+
+        private PaymentIngestResult snapshot() {
+            return new PaymentIngestResult(accepted, rejectedCount, List.copyOf(rejected),
+                    Duration.ofNanos(System.nanoTime() - started), copyUsed);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package by.itacademy.hibernate.importer;
+
+/**
+ * Формат входного потока выплат для {@link PaymentCopyImporter}
+ */
+public enum PaymentFormat {
+    /**
+     * Строки {@code username,amount}, необязательная первая строка-заголовок {@code username,amount}
+     */
+    CSV,
+    /**
+     * Записи {@link java.io.DataOutput#writeUTF(String) username} + {@link java.io.DataOutput#writeInt(int) amount}
+     * до конца потока
+     */
+    BINARY
+}
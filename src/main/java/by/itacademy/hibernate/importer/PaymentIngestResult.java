@@ -0,0 +1,26 @@
+package by.itacademy.hibernate.importer;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Прогресс или итог загрузки выплат. {@code rejected} содержит не более
+ * {@link PaymentCopyImporter#MAX_REPORTED_REJECTIONS} первых отклонённых записей, полное число - {@code rejectedCount}
+ */
+public record PaymentIngestResult(long accepted,
+                                  long rejectedCount,
+                                  List<RejectedPayment> rejected,
+                                  Duration elapsed,
+                                  boolean copyUsed) {
+
+    public double rowsPerSecond() {
+        long nanos = Math.max(elapsed.toNanos(), 1L);
+        return accepted * 1_000_000_000.0 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Payment (%s): %d rows accepted, %d rejected in %d ms (%.0f rows/s)"
+                .formatted(copyUsed ? "COPY" : "INSERT", accepted, rejectedCount, elapsed.toMillis(), rowsPerSecond());
+    }
+}
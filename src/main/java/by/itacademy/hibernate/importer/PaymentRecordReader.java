@@ -0,0 +1,103 @@
+package by.itacademy.hibernate.importer;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Последовательно читает записи выплат из потока в формате {@link PaymentFormat}
+ */
+class PaymentRecordReader {
+
+    private static final String CSV_HEADER = "username,amount";
+
+    private final PaymentFormat format;
+    private final BufferedReader textReader;
+    private final PushbackInputStream binaryInput;
+    private final DataInputStream dataInput;
+    private long recordNumber;
+
+    PaymentRecordReader(InputStream in, PaymentFormat format) {
+        this.format = format;
+        this.textReader = format == PaymentFormat.CSV
+                ? new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))
+                : null;
+        this.binaryInput = format == PaymentFormat.BINARY ? new PushbackInputStream(in) : null;
+        this.dataInput = binaryInput != null ? new DataInputStream(binaryInput) : null;
+    }
+
+    /**
+     * Возвращает следующую запись или {@code null} в конце потока
+     */
+    PaymentRecord next() {
+        try {
+            return format == PaymentFormat.CSV ? nextCsv() : nextBinary();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private PaymentRecord nextCsv() throws IOException {
+        String line;
+        do {
+            line = textReader.readLine();
+            if (line == null) {
+                return null;
+            }
+            recordNumber++;
+        } while (line.isBlank() || recordNumber == 1 && CSV_HEADER.equalsIgnoreCase(line.strip()));
+
+        int separator = line.lastIndexOf(',');
+        if (separator < 0) {
+            return PaymentRecord.rejected(recordNumber, "Expected 'username,amount': " + line);
+        }
+        String username = unquote(line.substring(0, separator).strip());
+        String amount = line.substring(separator + 1).strip();
+        try {
+            return PaymentRecord.of(recordNumber, username, Integer.parseInt(amount));
+        } catch (NumberFormatException e) {
+            return PaymentRecord.rejected(recordNumber, "Invalid amount: " + amount);
+        }
+    }
+
+    private PaymentRecord nextBinary() throws IOException {
+        int firstByte = binaryInput.read();
+        if (firstByte < 0) {
+            return null;
+        }
+        binaryInput.unread(firstByte);
+        recordNumber++;
+        try {
+            return PaymentRecord.of(recordNumber, dataInput.readUTF(), dataInput.readInt());
+        } catch (EOFException e) {
+            // поток оборвался посреди записи - следующий вызов вернёт null
+            return PaymentRecord.rejected(recordNumber, "Truncated record");
+        }
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1).replace("\"\"", "\"");
+        }
+        return value;
+    }
+
+    record PaymentRecord(long recordNumber, String username, int amount, String error) {
+
+        static PaymentRecord of(long recordNumber, String username, int amount) {
+            return username.isEmpty()
+                    ? rejected(recordNumber, "Empty username")
+                    : new PaymentRecord(recordNumber, username, amount, null);
+        }
+
+        static PaymentRecord rejected(long recordNumber, String error) {
+            return new PaymentRecord(recordNumber, null, 0, error);
+        }
+    }
+}
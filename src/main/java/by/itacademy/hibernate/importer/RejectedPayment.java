@@ -0,0 +1,7 @@
+package by.itacademy.hibernate.importer;
+
+/**
+ * Отклонённая при загрузке запись: номер записи во входном потоке и причина
+ */
+public record RejectedPayment(long recordNumber, String reason) {
+}
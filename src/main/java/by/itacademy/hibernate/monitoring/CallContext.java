@@ -0,0 +1,34 @@
+package by.itacademy.hibernate.monitoring;
+
+/**
+ * Счётчики текущего вызова DAO-метода в потоке. Заполняются {@link MetricsStatementInspector},
+ * {@link MetricsSessionEventListener} и {@link EntityLoadCounter}, пока идёт {@link DaoMetrics#record}
+ */
+final class CallContext {
+
+    private static final ThreadLocal<CallContext> CURRENT = new ThreadLocal<>();
+
+    final String method;
+    long statements;
+    long entitiesLoaded;
+    long cacheHits;
+    long cacheMisses;
+
+    private CallContext(String method) {
+        this.method = method;
+    }
+
+    static CallContext current() {
+        return CURRENT.get();
+    }
+
+    static CallContext open(String method) {
+        CallContext context = new CallContext(method);
+        CURRENT.set(context);
+        return context;
+    }
+
+    static void close() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,163 @@
+package by.itacademy.hibernate.monitoring;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.HdrHistogram.ConcurrentHistogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Фабрика трекеров HikariCP: для каждого пула собирает гистограммы времени получения и удержания соединения
+ * и публикует их в JMX под именем {@code by.itacademy.hibernate:type=ConnectionPool,name=<poolName>}.
+ * Подключается свойством {@code hibernate.hikari.metricsTrackerFactory}
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+    private static final Map<String, Tracker> POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * Возвращает метрики открытого пула с указанным именем
+     */
+    public static Optional<ConnectionPoolMetricsMXBean> find(String poolName) {
+        return Optional.ofNullable(POOLS.get(poolName));
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        Tracker tracker = new Tracker(poolName, poolStats);
+        tracker.register();
+        POOLS.put(poolName, tracker);
+        return tracker;
+    }
+
+    private static class Tracker implements IMetricsTracker, ConnectionPoolMetricsMXBean {
+
+        private static final double MICROS_PER_MILLI = 1_000.0;
+
+        private final String poolName;
+        private final PoolStats poolStats;
+        private final ObjectName objectName;
+        private final ConcurrentHistogram acquireMicros = new ConcurrentHistogram(3);
+        private final ConcurrentHistogram usageMillis = new ConcurrentHistogram(3);
+        private final LongAdder timeouts = new LongAdder();
+
+        private Tracker(String poolName, PoolStats poolStats) {
+            this.poolName = poolName;
+            this.poolStats = poolStats;
+            try {
+                this.objectName = new ObjectName("by.itacademy.hibernate:type=ConnectionPool,name=" + ObjectName.quote(poolName));
+            } catch (JMException e) {
+                throw new IllegalArgumentException("Invalid pool name: " + poolName, e);
+            }
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquireMicros.recordValue(Math.max(elapsedAcquiredNanos / 1_000, 0));
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageMillis.recordValue(Math.max(elapsedBorrowedMillis, 0));
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+
+        @Override
+        public void close() {
+            POOLS.remove(poolName, this);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            } catch (JMException e) {
+                throw new IllegalStateException("Unable to unregister " + objectName, e);
+            }
+        }
+
+        private void register() {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(this, objectName);
+                }
+            } catch (JMException e) {
+                throw new IllegalStateException("Unable to register " + objectName, e);
+            }
+        }
+
+        @Override
+        public long getAcquisitions() {
+            return acquireMicros.getTotalCount();
+        }
+
+        @Override
+        public double getAcquireP50Millis() {
+            return acquireMicros.getValueAtPercentile(50.0) / MICROS_PER_MILLI;
+        }
+
+        @Override
+        public double getAcquireP99Millis() {
+            return acquireMicros.getValueAtPercentile(99.0) / MICROS_PER_MILLI;
+        }
+
+        @Override
+        public double getAcquireP999Millis() {
+            return acquireMicros.getValueAtPercentile(99.9) / MICROS_PER_MILLI;
+        }
+
+        @Override
+        public double getAcquireMaxMillis() {
+            return acquireMicros.getMaxValue() / MICROS_PER_MILLI;
+        }
+
+        @Override
+        public double getUsageP99Millis() {
+            return usageMillis.getValueAtPercentile(99.0);
+        }
+
+        @Override
+        public long getTimeouts() {
+            return timeouts.sum();
+        }
+
+        @Override
+        public int getActiveConnections() {
+            return poolStats.getActiveConnections();
+        }
+
+        @Override
+        public int getIdleConnections() {
+            return poolStats.getIdleConnections();
+        }
+
+        @Override
+        public int getTotalConnections() {
+            return poolStats.getTotalConnections();
+        }
+
+        @Override
+        public int getPendingThreads() {
+            return poolStats.getPendingThreads();
+        }
+
+        @Override
+        public void reset() {
+            acquireMicros.reset();
+            usageMillis.reset();
+            timeouts.reset();
+        }
+    }
+}
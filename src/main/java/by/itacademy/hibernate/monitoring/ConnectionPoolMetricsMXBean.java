@@ -0,0 +1,31 @@
+package by.itacademy.hibernate.monitoring;
+
+/**
+ * JMX-представление метрик пула соединений: время получения соединения и текущее состояние пула
+ */
+public interface ConnectionPoolMetricsMXBean {
+
+    long getAcquisitions();
+
+    double getAcquireP50Millis();
+
+    double getAcquireP99Millis();
+
+    double getAcquireP999Millis();
+
+    double getAcquireMaxMillis();
+
+    double getUsageP99Millis();
+
+    long getTimeouts();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getTotalConnections();
+
+    int getPendingThreads();
+
+    void reset();
+}
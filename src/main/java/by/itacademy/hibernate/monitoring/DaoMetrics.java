@@ -0,0 +1,170 @@
+package by.itacademy.hibernate.monitoring;
+
+import by.itacademy.hibernate.dao.Slice;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Метрики вызовов DAO-методов: гистограмма задержек, число SQL-запросов, строк, загруженных сущностей
+ * и обращений к кэшу второго уровня. Счётчики собираются по потоку, поэтому учитывается только работа,
+ * выполненная внутри {@link #record}. Вложенные вызовы {@link #record} относятся к внешнему.
+ * Методы {@link by.itacademy.hibernate.dao.UserDao} записываются автоматически, остальной код можно обернуть явно:
+ * <pre>
+ * List&lt;CompanyAvgPayment&gt; avg = DaoMetrics.getInstance()
+ *         .record("PaymentStatsDao.findCompanyAvgPayments", () -&gt; paymentStatsDao.findCompanyAvgPayments(session));
+ * </pre>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class DaoMetrics implements DaoMetricsMXBean {
+
+    public static final String OBJECT_NAME = "by.itacademy.hibernate:type=DaoMetrics";
+
+    private static final DaoMetrics INSTANCE = new DaoMetrics();
+
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    public <T> T record(String method, Supplier<T> call) {
+        if (CallContext.current() != null) {
+            return call.get();
+        }
+        CallContext context = CallContext.open(method);
+        long started = System.nanoTime();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            CallContext.close();
+            methods.computeIfAbsent(method, name -> new MethodMetrics())
+                    .record(System.nanoTime() - started, rowsOf(result), failed, context);
+        }
+    }
+
+    public void record(String method, Runnable call) {
+        record(method, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Возвращает метрики всех вызывавшихся методов, упорядоченные по имени метода
+     */
+    public Map<String, MethodStats> snapshot() {
+        Map<String, MethodStats> snapshot = new TreeMap<>();
+        methods.forEach((method, metrics) -> snapshot.put(method, metrics.snapshot()));
+        return snapshot;
+    }
+
+    @Override
+    public void reset() {
+        methods.clear();
+    }
+
+    /**
+     * Регистрирует метрики в платформенном MBeanServer под {@link #OBJECT_NAME} (повторный вызов ничего не делает)
+     */
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register " + OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCalls() {
+        return view(MethodStats::calls);
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        return view(MethodStats::errors);
+    }
+
+    @Override
+    public Map<String, Double> getP50Millis() {
+        return view(MethodStats::p50Millis);
+    }
+
+    @Override
+    public Map<String, Double> getP99Millis() {
+        return view(MethodStats::p99Millis);
+    }
+
+    @Override
+    public Map<String, Double> getP999Millis() {
+        return view(MethodStats::p999Millis);
+    }
+
+    @Override
+    public Map<String, Double> getMaxMillis() {
+        return view(MethodStats::maxMillis);
+    }
+
+    @Override
+    public Map<String, Long> getStatements() {
+        return view(MethodStats::statements);
+    }
+
+    @Override
+    public Map<String, Long> getRowsFetched() {
+        return view(MethodStats::rowsFetched);
+    }
+
+    @Override
+    public Map<String, Long> getEntitiesLoaded() {
+        return view(MethodStats::entitiesLoaded);
+    }
+
+    @Override
+    public Map<String, Long> getSecondLevelCacheHits() {
+        return view(MethodStats::secondLevelCacheHits);
+    }
+
+    @Override
+    public Map<String, Long> getSecondLevelCacheMisses() {
+        return view(MethodStats::secondLevelCacheMisses);
+    }
+
+    private <V> Map<String, V> view(Function<MethodStats, V> value) {
+        Map<String, V> view = new TreeMap<>();
+        snapshot().forEach((method, stats) -> view.put(method, value.apply(stats)));
+        return view;
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.content().size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return result == null ? 0 : 1;
+    }
+
+    public static DaoMetrics getInstance() {
+        return INSTANCE;
+    }
+}
@@ -0,0 +1,33 @@
+package by.itacademy.hibernate.monitoring;
+
+import java.util.Map;
+
+/**
+ * JMX-представление {@link DaoMetrics}: каждое свойство - таблица "DAO-метод -> значение"
+ */
+public interface DaoMetricsMXBean {
+
+    Map<String, Long> getCalls();
+
+    Map<String, Long> getErrors();
+
+    Map<String, Double> getP50Millis();
+
+    Map<String, Double> getP99Millis();
+
+    Map<String, Double> getP999Millis();
+
+    Map<String, Double> getMaxMillis();
+
+    Map<String, Long> getStatements();
+
+    Map<String, Long> getRowsFetched();
+
+    Map<String, Long> getEntitiesLoaded();
+
+    Map<String, Long> getSecondLevelCacheHits();
+
+    Map<String, Long> getSecondLevelCacheMisses();
+
+    void reset();
+}
@@ -0,0 +1,18 @@
+package by.itacademy.hibernate.monitoring;
+
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+
+/**
+ * Считает сущности, загруженные в текущем вызове DAO
+ */
+public class EntityLoadCounter implements PostLoadEventListener {
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        CallContext context = CallContext.current();
+        if (context != null) {
+            context.entitiesLoaded++;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package by.itacademy.hibernate.monitoring;
+
+/**
+ * JMX-представление {@link org.hibernate.stat.Statistics} одной SessionFactory
+ */
+public interface HibernateStatisticsMXBean {
+
+    long getSessionOpenCount();
+
+    long getTransactionCount();
+
+    long getConnectCount();
+
+    long getPrepareStatementCount();
+
+    long getQueryExecutionCount();
+
+    long getQueryExecutionMaxTime();
+
+    String getQueryExecutionMaxTimeQueryString();
+
+    long getEntityLoadCount();
+
+    long getEntityFetchCount();
+
+    long getCollectionFetchCount();
+
+    long getSecondLevelCacheHitCount();
+
+    long getSecondLevelCacheMissCount();
+
+    long getNaturalIdCacheHitCount();
+
+    long getNaturalIdCacheMissCount();
+
+    void clear();
+}
@@ -0,0 +1,50 @@
+package by.itacademy.hibernate.monitoring;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Накопленные метрики одного DAO-метода. Задержки хранятся в микросекундах с точностью 3 значащих цифры
+ */
+class MethodMetrics {
+
+    private static final double MICROS_PER_MILLI = 1_000.0;
+
+    private final ConcurrentHistogram latencyMicros = new ConcurrentHistogram(3);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rowsFetched = new LongAdder();
+    private final LongAdder entitiesLoaded = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    void record(long latencyNanos, long rows, boolean failed, CallContext context) {
+        latencyMicros.recordValue(Math.max(latencyNanos / 1_000, 0));
+        if (failed) {
+            errors.increment();
+        }
+        statements.add(context.statements);
+        rowsFetched.add(rows);
+        entitiesLoaded.add(context.entitiesLoaded);
+        cacheHits.add(context.cacheHits);
+        cacheMisses.add(context.cacheMisses);
+    }
+
+    MethodStats snapshot() {
+        Histogram histogram = latencyMicros.copy();
+        return new MethodStats(
+                histogram.getTotalCount(),
+                errors.sum(),
+                histogram.getValueAtPercentile(50.0) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99.0) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                histogram.getMaxValue() / MICROS_PER_MILLI,
+                statements.sum(),
+                rowsFetched.sum(),
+                entitiesLoaded.sum(),
+                cacheHits.sum(),
+                cacheMisses.sum());
+    }
+}
@@ -0,0 +1,17 @@
+package by.itacademy.hibernate.monitoring;
+
+/**
+ * Снимок метрик DAO-метода: число вызовов и ошибок, перцентили задержки (мс) и суммарные счётчики по всем вызовам
+ */
+public record MethodStats(long calls,
+                          long errors,
+                          double p50Millis,
+                          double p99Millis,
+                          double p999Millis,
+                          double maxMillis,
+                          long statements,
+                          long rowsFetched,
+                          long entitiesLoaded,
+                          long secondLevelCacheHits,
+                          long secondLevelCacheMisses) {
+}
@@ -0,0 +1,23 @@
+package by.itacademy.hibernate.monitoring;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Считает попадания и промахи кэша второго уровня в текущем вызове DAO.
+ * Подключается ко всем сессиям через {@code hibernate.session.events.auto}
+ */
+public class MetricsSessionEventListener extends BaseSessionEventListener {
+
+    @Override
+    public void cacheGetEnd(boolean hit) {
+        CallContext context = CallContext.current();
+        if (context == null) {
+            return;
+        }
+        if (hit) {
+            context.cacheHits++;
+        } else {
+            context.cacheMisses++;
+        }
+    }
+}
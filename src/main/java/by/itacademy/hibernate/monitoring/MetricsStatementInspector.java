@@ -0,0 +1,40 @@
+package by.itacademy.hibernate.monitoring;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Считает SQL-запросы текущего вызова DAO и передаёт SQL следующему инспектору (если он настроен)
+ */
+public class MetricsStatementInspector implements StatementInspector {
+
+    private final StatementInspector delegate;
+
+    public MetricsStatementInspector(StatementInspector delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Оборачивает инспектор из настройки {@code hibernate.session_factory.statement_inspector}:
+     * экземпляр, класс или имя класса ({@code null} - без следующего инспектора)
+     */
+    public static MetricsStatementInspector wrap(Object setting) {
+        if (setting == null || setting instanceof StatementInspector) {
+            return new MetricsStatementInspector((StatementInspector) setting);
+        }
+        try {
+            Class<?> type = setting instanceof Class<?> settingClass ? settingClass : Class.forName(setting.toString());
+            return new MetricsStatementInspector((StatementInspector) type.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid statement inspector: " + setting, e);
+        }
+    }
+
+    @Override
+    public String inspect(String sql) {
+        CallContext context = CallContext.current();
+        if (context != null) {
+            context.statements++;
+        }
+        return delegate == null ? sql : delegate.inspect(sql);
+    }
+}
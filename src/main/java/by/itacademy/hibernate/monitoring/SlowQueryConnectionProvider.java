@@ -0,0 +1,29 @@
+package by.itacademy.hibernate.monitoring;
+
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Пул HikariCP, соединения которого пишут медленные запросы в {@link SlowQueryLog}
+ * (настройки {@code hql_task.slow_query.*}). Если журнал выключен, соединения пула отдаются без обёртки
+ */
+public class SlowQueryConnectionProvider extends HikariCPConnectionProvider {
+
+    private SlowQueryLog slowQueryLog;
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void configure(Map props) {
+        super.configure(props);
+        slowQueryLog = SlowQueryLog.fromSettings(props);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        return slowQueryLog.isEnabled() ? slowQueryLog.wrap(connection) : connection;
+    }
+}
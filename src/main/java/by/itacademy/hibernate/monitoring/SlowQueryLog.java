@@ -0,0 +1,282 @@
+package by.itacademy.hibernate.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.temporal.Temporal;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Журнал медленных SQL-запросов. Пишет запросы, выполнявшиеся дольше порога (уровень WARN), и случайную долю
+ * всех запросов (INFO) вместе со значениями параметров, DAO-методом из {@link DaoMetrics#record}, временем
+ * выполнения и, по настройке, планом EXPLAIN. Время - от вызова execute* до возврата управления драйвером,
+ * без чтения оставшихся строк курсора.
+ * <p>
+ * Соединения оборачиваются {@link #wrap}, обычно через {@link SlowQueryConnectionProvider}. Если журнал выключен,
+ * соединения не оборачиваются вовсе. EXPLAIN по умолчанию выключен: он выполняется синхронно на том же соединении
+ * и добавляет к попавшему в журнал запросу ещё один запрос к базе. Внутри транзакции EXPLAIN выполняется
+ * под savepoint, который затем откатывается, поэтому его ошибка не прерывает транзакцию приложения.
+ * ANALYZE выполняется только для select, для изменяющих запросов выводится план без выполнения. Записи уходят в логгер этого класса; в log4j.xml он подключён
+ * к неблокирующему AsyncAppender
+ */
+@Slf4j
+public class SlowQueryLog {
+
+    /**
+     * Порог в миллисекундах, отрицательный или не заданный - медленные запросы не отбираются
+     */
+    public static final String THRESHOLD_MS = "hql_task.slow_query.threshold_ms";
+    /**
+     * Доля запросов от 0 до 1, которые пишутся независимо от времени выполнения
+     */
+    public static final String SAMPLE_RATE = "hql_task.slow_query.sample_rate";
+    /**
+     * none, plan или analyze - см. {@link ExplainMode}
+     */
+    public static final String EXPLAIN = "hql_task.slow_query.explain";
+
+    private static final int MAX_PARAMETER_LENGTH = 100;
+
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final ExplainMode explainMode;
+
+    /**
+     * {threshold} - null, если медленные запросы отбирать не нужно
+     */
+    public SlowQueryLog(Duration threshold, double sampleRate, ExplainMode explainMode) {
+        if (threshold != null && threshold.isNegative()) {
+            throw new IllegalArgumentException("Threshold must be non-negative");
+        }
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+        }
+        this.thresholdNanos = threshold == null ? -1 : threshold.toNanos();
+        this.sampleRate = sampleRate;
+        this.explainMode = explainMode;
+    }
+
+    /**
+     * Читает {@link #THRESHOLD_MS}, {@link #SAMPLE_RATE} и {@link #EXPLAIN} из настроек Hibernate
+     */
+    public static SlowQueryLog fromSettings(Map<?, ?> settings) {
+        long thresholdMs = ConfigurationHelper.getLong(THRESHOLD_MS, settings, -1);
+        Object sampleRate = settings.get(SAMPLE_RATE);
+        return new SlowQueryLog(
+                thresholdMs < 0 ? null : Duration.ofMillis(thresholdMs),
+                sampleRate == null ? 0 : Double.parseDouble(sampleRate.toString()),
+                ExplainMode.valueOf(ConfigurationHelper.getString(EXPLAIN, settings, "none").toUpperCase(Locale.ROOT)));
+    }
+
+    public boolean isEnabled() {
+        return thresholdNanos >= 0 || sampleRate > 0;
+    }
+
+    /**
+     * Оборачивает {connection}: запросы, созданные через createStatement и prepareStatement, попадают в журнал
+     */
+    public Connection wrap(Connection connection) {
+        return proxy(Connection.class, (proxy, method, args) -> {
+            if (isIdentityMethod(method)) {
+                return identity(proxy, method, args);
+            }
+            Object result = invoke(connection, method, args);
+            if (method.getName().equals("prepareStatement")) {
+                return proxy(PreparedStatement.class, new StatementHandler(connection, (Statement) result, (String) args[0]));
+            }
+            if (method.getName().equals("createStatement")) {
+                return proxy(Statement.class, new StatementHandler(connection, (Statement) result, null));
+            }
+            return result;
+        });
+    }
+
+    private void record(Connection connection, String sql, List<Binding> bindings, int batchSize, long elapsedNanos) {
+        boolean slow = thresholdNanos >= 0 && elapsedNanos >= thresholdNanos;
+        if (!slow && (sampleRate == 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        CallContext context = CallContext.current();
+        StringBuilder entry = new StringBuilder()
+                .append(slow ? "slow " : "sampled ")
+                .append(String.format(Locale.ROOT, "%.3f", elapsedNanos / 1_000_000.0)).append(" ms")
+                .append(" [").append(context == null ? "-" : context.method).append("] ")
+                .append(sql.replaceAll("\\s+", " ").strip());
+        if (!bindings.isEmpty()) {
+            StringJoiner parameters = new StringJoiner(", ", " | parameters: ", "");
+            bindings.forEach(binding -> parameters.add(binding.toString()));
+            entry.append(parameters);
+        }
+        if (batchSize > 0) {
+            entry.append(" | batch: ").append(batchSize).append(" rows, last row parameters shown");
+        }
+        String plan = explain(connection, sql, bindings);
+        if (plan != null) {
+            entry.append(System.lineSeparator()).append(plan);
+        }
+        if (slow) {
+            log.warn(entry.toString());
+        } else {
+            log.info(entry.toString());
+        }
+    }
+
+    private String explain(Connection connection, String sql, List<Binding> bindings) {
+        if (explainMode == ExplainMode.NONE) {
+            return null;
+        }
+        try {
+            boolean analyze = explainMode == ExplainMode.ANALYZE
+                              && sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select");
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    (analyze ? "explain (analyze, buffers) " : "explain ") + sql)) {
+                for (Binding binding : bindings) {
+                    binding.apply(statement);
+                }
+                StringJoiner plan = new StringJoiner(System.lineSeparator());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        plan.add("    " + resultSet.getString(1));
+                    }
+                }
+                return plan.toString();
+            } finally {
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                    connection.releaseSavepoint(savepoint);
+                }
+            }
+        } catch (SQLException | ReflectiveOperationException e) {
+            return "    explain failed: " + e.getMessage();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SlowQueryLog.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * equals и hashCode обёртки - по ссылке: Hibernate хранит открытые statement-ы в HashMap
+     */
+    private static boolean isIdentityMethod(Method method) {
+        return method.getDeclaringClass() == Object.class && !method.getName().equals("toString");
+    }
+
+    private static Object identity(Object proxy, Method method, Object[] args) {
+        return method.getName().equals("equals") ? proxy == args[0] : System.identityHashCode(proxy);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    public enum ExplainMode {
+        /**
+         * Без плана
+         */
+        NONE,
+        /**
+         * EXPLAIN: план без выполнения
+         */
+        PLAN,
+        /**
+         * EXPLAIN (ANALYZE, BUFFERS) для select: запрос выполняется повторно, поэтому медленный запрос
+         * замедляется вдвое. Для остальных запросов - как {@link #PLAN}
+         */
+        ANALYZE
+    }
+
+    /**
+     * Вызов сеттера параметра PreparedStatement: повторяется при EXPLAIN тем же методом с теми же аргументами
+     */
+    private record Binding(Method setter, Object[] args) {
+
+        void apply(PreparedStatement statement) throws ReflectiveOperationException {
+            setter.invoke(statement, args);
+        }
+
+        @Override
+        public String toString() {
+            Object value = setter.getName().equals("setNull") ? null : args[1];
+            String text = value instanceof String || value instanceof Date || value instanceof Temporal
+                    ? "'" + value + "'"
+                    : String.valueOf(value);
+            if (text.length() > MAX_PARAMETER_LENGTH) {
+                text = text.substring(0, MAX_PARAMETER_LENGTH) + "...";
+            }
+            return args[0] + "=" + text;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final Statement target;
+        private final String preparedSql;
+        private final Map<Integer, Binding> bindings = new TreeMap<>();
+        private int batchSize;
+
+        private StatementHandler(Connection connection, Statement target, String preparedSql) {
+            this.connection = connection;
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isIdentityMethod(method)) {
+                return identity(proxy, method, args);
+            }
+            String name = method.getName();
+            if (preparedSql != null && name.startsWith("set") && args != null && args.length >= 2
+                && args[0] instanceof Integer index) {
+                bindings.put(index, new Binding(method, args));
+            } else if (name.equals("clearParameters")) {
+                bindings.clear();
+            } else if (name.equals("addBatch") && preparedSql != null) {
+                batchSize++;
+            } else if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            return SlowQueryLog.invoke(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+            long started = System.nanoTime();
+            Object result = SlowQueryLog.invoke(target, method, args);
+            long elapsed = System.nanoTime() - started;
+            if (sql != null) {
+                record(connection, sql, sql.equals(preparedSql) ? List.copyOf(bindings.values()) : List.of(),
+                        method.getName().equals("executeBatch") ? batchSize : 0, elapsed);
+            }
+            if (method.getName().equals("executeBatch")) {
+                batchSize = 0;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package by.itacademy.hibernate.search;
+
+import by.itacademy.hibernate.dto.UserSearchHit;
+import by.itacademy.hibernate.entity.PersonalInfo;
+import by.itacademy.hibernate.entity.User;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Индекс сотрудников в памяти процесса для автодополнения: имя, фамилия и username (в нижнем регистре)
+ * лежат в упорядоченной {@link ConcurrentSkipListMap}, поиск по префиксу - обход диапазона ключей без обращения к базе.
+ * Ключи упорядочены лексикографически, поэтому точные совпадения и короткие дополнения находятся первыми.
+ * <p>
+ * Индекс синхронизируется с сохранениями, изменениями и удалениями User через сессии {@link SessionFactory}
+ * после коммита транзакции. Изменения массовыми HQL/SQL-запросами, COPY и из других процессов не отслеживаются.
+ * Для нечёткого поиска используйте {@link by.itacademy.hibernate.dao.UserDao#searchByName}
+ */
+@Slf4j
+public class UserNameIndex {
+
+    private static final char SEPARATOR = '\0';
+    private static final int FETCH_SIZE = 10_000;
+
+    private final NavigableMap<String, Entry> terms = new ConcurrentSkipListMap<>();
+    private final Map<Long, Entry> users = new ConcurrentHashMap<>();
+    /**
+     * id сотрудников, удалённых во время загрузки: курсор мог прочитать их строки до удаления
+     */
+    private final Set<Long> deletedDuringLoad = ConcurrentHashMap.newKeySet();
+    private volatile boolean loading = true;
+
+    private UserNameIndex() {
+    }
+
+    /**
+     * Создаёт индекс, подписывает его на изменения User в {sessionFactory} и загружает всех сотрудников.
+     * Подписка действует, пока открыта {sessionFactory}
+     */
+    public static UserNameIndex attach(SessionFactory sessionFactory) {
+        UserNameIndex index = new UserNameIndex();
+        Listener listener = index.new Listener();
+        EventListenerRegistry registry = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        // подписка до загрузки: сотрудник, сохранённый во время загрузки, не будет потерян
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+        index.load(sessionFactory);
+        return index;
+    }
+
+    /**
+     * Возвращает не более {limit} сотрудников, у которых имя, фамилия или username начинается с {prefix}
+     * (без учёта регистра). Оценка - 1 + доля совпавшего префикса в слове, результаты упорядочены по убыванию оценки
+     */
+    public List<UserSearchHit> search(String prefix, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        String normalized = normalize(prefix);
+        if (normalized == null) {
+            return List.of();
+        }
+        Map<Long, UserSearchHit> hits = new LinkedHashMap<>();
+        for (Map.Entry<String, Entry> term : terms.subMap(normalized, true, normalized + Character.MAX_VALUE, false).entrySet()) {
+            if (hits.size() == limit) {
+                break;
+            }
+            Entry entry = term.getValue();
+            int termLength = term.getKey().indexOf(SEPARATOR);
+            hits.putIfAbsent(entry.id(), new UserSearchHit(entry.id(), entry.username(), entry.fullName(),
+                    1.0 + (double) normalized.length() / termLength));
+        }
+        return hits.values().stream()
+                .sorted(Comparator.comparing(UserSearchHit::score).reversed()
+                        .thenComparing(UserSearchHit::username, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+    }
+
+    /**
+     * Число сотрудников в индексе
+     */
+    public int size() {
+        return users.size();
+    }
+
+    private void load(SessionFactory sessionFactory) {
+        long started = System.nanoTime();
+        @Cleanup StatelessSession session = sessionFactory.openStatelessSession();
+        // курсор с fetch size PostgreSQL открывает только внутри транзакции
+        Transaction transaction = session.beginTransaction();
+        try (ScrollableResults results = session.createQuery("""
+                        select u.id, u.username, u.personalInfo.firstname, u.personalInfo.lastname from User u
+                        """)
+                .setFetchSize(FETCH_SIZE)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                // сотрудник, изменённый после подписки, уже в индексе, а удалённый не возвращается в него:
+                // событие новее строки курсора
+                users.computeIfAbsent((Long) results.get(0), id -> deletedDuringLoad.contains(id)
+                        ? null
+                        : add(new Entry(id, (String) results.get(1), (String) results.get(2), (String) results.get(3))));
+            }
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            loading = false;
+            deletedDuringLoad.clear();
+        }
+        log.info("User name index: {} users loaded in {} ms", users.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void put(User user) {
+        PersonalInfo personalInfo = user.getPersonalInfo();
+        Entry entry = new Entry(user.getId(), user.getUsername(),
+                personalInfo == null ? null : personalInfo.getFirstname(),
+                personalInfo == null ? null : personalInfo.getLastname());
+        users.compute(entry.id(), (id, previous) -> {
+            if (previous != null) {
+                remove(previous);
+            }
+            return add(entry);
+        });
+    }
+
+    private void remove(Long id) {
+        if (loading) {
+            deletedDuringLoad.add(id);
+        }
+        users.computeIfPresent(id, (key, previous) -> {
+            remove(previous);
+            return null;
+        });
+    }
+
+    private Entry add(Entry entry) {
+        entry.keys().forEach(key -> terms.put(key, entry));
+        return entry;
+    }
+
+    private void remove(Entry entry) {
+        entry.keys().forEach(terms::remove);
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String normalized = value.strip().toLowerCase(Locale.ROOT);
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    private record Entry(Long id, String username, String firstname, String lastname) {
+
+        String fullName() {
+            return firstname + " " + lastname;
+        }
+
+        Stream<String> keys() {
+            return Stream.of(firstname, lastname, username)
+                    .map(UserNameIndex::normalize)
+                    .filter(term -> term != null)
+                    .distinct()
+                    .map(term -> term + SEPARATOR + id);
+        }
+    }
+
+    private class Listener implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+            PostCommitDeleteEventListener {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            if (event.getEntity() instanceof User user) {
+                put(user);
+            }
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            if (event.getEntity() instanceof User user) {
+                put(user);
+            }
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            if (event.getEntity() instanceof User) {
+                remove((Long) event.getId());
+            }
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return User.class.isAssignableFrom(persister.getMappedClass());
+        }
+
+        @Override
+        @Deprecated
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return requiresPostCommitHandling(persister);
+        }
+    }
+}
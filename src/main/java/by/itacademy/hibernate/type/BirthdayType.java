@@ -0,0 +1,87 @@
+package by.itacademy.hibernate.type;
+
+import by.itacademy.hibernate.entity.Birthday;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.usertype.UserType;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Hibernate-тип для {@link Birthday}: колонка DATE читается и пишется как {@link LocalDate} напрямую
+ * (JDBC 4.2 {@code getObject/setObject}), без промежуточных {@link java.sql.Date} и {@link java.util.Optional}.
+ * Birthday неизменяем, поэтому снимок для dirty checking не копируется
+ */
+public class BirthdayType implements UserType {
+
+    public static final BirthdayType INSTANCE = new BirthdayType();
+
+    private static final int[] SQL_TYPES = {Types.DATE};
+
+    @Override
+    public int[] sqlTypes() {
+        return SQL_TYPES;
+    }
+
+    @Override
+    public Class<Birthday> returnedClass() {
+        return Birthday.class;
+    }
+
+    @Override
+    public boolean equals(Object x, Object y) {
+        return Objects.equals(x, y);
+    }
+
+    @Override
+    public int hashCode(Object x) {
+        return Objects.hashCode(x);
+    }
+
+    @Override
+    public Object nullSafeGet(ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner)
+            throws SQLException {
+        LocalDate date = rs.getObject(names[0], LocalDate.class);
+        return date == null ? null : new Birthday(date);
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, Object value, int index, SharedSessionContractImplementor session)
+            throws SQLException {
+        if (value == null) {
+            st.setNull(index, Types.DATE);
+        } else {
+            st.setObject(index, ((Birthday) value).birthDate(), Types.DATE);
+        }
+    }
+
+    @Override
+    public Object deepCopy(Object value) {
+        return value;
+    }
+
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+
+    @Override
+    public Serializable disassemble(Object value) {
+        return (Birthday) value;
+    }
+
+    @Override
+    public Object assemble(Serializable cached, Object owner) {
+        return cached;
+    }
+
+    @Override
+    public Object replace(Object original, Object target, Object owner) {
+        return original;
+    }
+}
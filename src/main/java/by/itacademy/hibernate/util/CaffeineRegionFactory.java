@@ -0,0 +1,67 @@
+package by.itacademy.hibernate.util;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.support.RegionNameQualifier;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Кэш второго уровня на Caffeine (JCache). Регионы создаются с настройками из {@link #CACHE_REGIONS} при первом обращении.
+ * RegionFactory - сервис реестра, поэтому каждый реестр получает собственный CacheManager с уникальным URI.
+ * Фабрики общего {@link HibernateBootstrap} делят и реестр, и менеджер; их кэши разводит префикс регионов,
+ * уникальный для каждой фабрики (см. {@link HibernateUtil}): фабрики не видят кэшированных сущностей друг друга,
+ * а закрытие фабрики закрывает только её кэши
+ */
+public class CaffeineRegionFactory extends JCacheRegionFactory {
+
+    /**
+     * Регионы кэша второго уровня (см. {@code @Cache}/{@code @NaturalIdCache} на сущностях): имя, максимальный размер, TTL
+     */
+    private static final Map<String, CacheRegion> CACHE_REGIONS = Stream.of(
+            new CacheRegion("company", 10_000, Duration.ofHours(1)),
+            new CacheRegion("company-natural-id", 10_000, Duration.ofHours(1)),
+            new CacheRegion("chat", 10_000, Duration.ofHours(1)),
+            new CacheRegion("chat-natural-id", 10_000, Duration.ofHours(1)),
+            new CacheRegion("user", 100_000, Duration.ofMinutes(10)),
+            new CacheRegion("user-natural-id", 100_000, Duration.ofMinutes(10))
+    ).collect(Collectors.toMap(CacheRegion::name, Function.identity()));
+
+    @Override
+    protected CacheManager resolveCacheManager(SessionFactoryOptions settings, Map properties) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("hql-task-" + UUID.randomUUID()), provider.getDefaultClassLoader());
+    }
+
+    @Override
+    protected Cache<Object, Object> getOrCreateCache(String regionName, SessionFactoryImplementor sessionFactory) {
+        CacheRegion region = CACHE_REGIONS.get(regionName);
+        CacheManager cacheManager = getCacheManager();
+        String cacheName = RegionNameQualifier.INSTANCE.qualify(regionName, sessionFactory.getSessionFactoryOptions());
+        if (region != null && cacheManager.getCache(cacheName) == null) {
+            cacheManager.createCache(cacheName, new CaffeineConfiguration<>()
+                    .setMaximumSize(OptionalLong.of(region.maxSize()))
+                    .setExpireAfterWrite(OptionalLong.of(region.timeToLive().toNanos()))
+                    .setStoreByValue(false)
+                    .setStatisticsEnabled(true));
+        }
+        return super.getOrCreateCache(regionName, sessionFactory);
+    }
+
+    private record CacheRegion(String name, long maxSize, Duration timeToLive) {
+    }
+}
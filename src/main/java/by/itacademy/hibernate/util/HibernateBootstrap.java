@@ -0,0 +1,56 @@
+package by.itacademy.hibernate.util;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+
+import java.util.Properties;
+
+/**
+ * Общий реестр сервисов для нескольких SessionFactory: пул соединений, JDBC-окружение и диалект
+ * поднимаются один раз, переживают закрытие отдельных фабрик и закрываются в {@link #close()}.
+ * {@link Metadata} собирается заранее в конструкторе (ошибки маппинга видны сразу) и расходуется первой фабрикой.
+ * Переиспользовать её нельзя: в Hibernate 5.5 TypeConfiguration сбрасывает контекст сборки Metadata, как только
+ * из неё построена фабрика, и следующая сборка падает, поэтому для остальных фабрик Metadata собирается заново.
+ * Открытые фабрики не делят кэш второго уровня (см. {@link CaffeineRegionFactory})
+ * <pre>
+ * try (HibernateBootstrap bootstrap = new HibernateBootstrap()) {
+ *     SessionFactory sessionFactory = bootstrap.buildSessionFactory();
+ *     ...
+ * }
+ * </pre>
+ */
+public class HibernateBootstrap implements AutoCloseable {
+
+    private final StandardServiceRegistry serviceRegistry;
+    private Metadata metadata;
+
+    public HibernateBootstrap() {
+        this(new Properties());
+    }
+
+    /**
+     * Свойства из {@code properties} переопределяют значения из hibernate.cfg.xml
+     */
+    public HibernateBootstrap(Properties properties) {
+        this.serviceRegistry = HibernateUtil.buildServiceRegistry(properties, false);
+        try {
+            this.metadata = HibernateUtil.buildMetadata(serviceRegistry);
+        } catch (RuntimeException e) {
+            StandardServiceRegistryBuilder.destroy(serviceRegistry);
+            throw e;
+        }
+    }
+
+    public synchronized SessionFactory buildSessionFactory() {
+        Metadata unused = metadata != null ? metadata : HibernateUtil.buildMetadata(serviceRegistry);
+        metadata = null;
+        return HibernateUtil.buildSessionFactory(unused);
+    }
+
+    @Override
+    public void close() {
+        StandardServiceRegistryBuilder.destroy(serviceRegistry);
+    }
+}
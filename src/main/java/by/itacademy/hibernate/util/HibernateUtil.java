@@ -1,18 +1,149 @@
 package by.itacademy.hibernate.util;
 
-import by.itacademy.hibernate.convertor.BirthdayConvertor;
+import by.itacademy.hibernate.change.ChangeEventBus;
+import by.itacademy.hibernate.change.EntityChangeListener;
+import by.itacademy.hibernate.entity.Birthday;
+import by.itacademy.hibernate.monitoring.DaoMetrics;
+import by.itacademy.hibernate.monitoring.EntityLoadCounter;
+import by.itacademy.hibernate.monitoring.HibernateStatistics;
+import by.itacademy.hibernate.monitoring.MetricsSessionEventListener;
+import by.itacademy.hibernate.monitoring.MetricsStatementInspector;
+import by.itacademy.hibernate.type.BirthdayType;
 import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
-import org.hibernate.cfg.Configuration;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.boot.spi.MetadataImplementor;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.NamedQueryDefinition;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class HibernateUtil {
+
+    private static final Map<SessionFactory, ChangeEventBus> CHANGE_EVENT_BUSES = new ConcurrentHashMap<>();
+
     public static SessionFactory buildSessionFactory() {
-        Configuration configuration = new Configuration().configure();
-        configuration.configure();
-        configuration.addAttributeConverter(new BirthdayConvertor());
-//        configuration.registerTypeOverride(new JsonBinaryType());
-//        configuration.addAnnotatedClass(User.class);
-        configuration.setPhysicalNamingStrategy(new CamelCaseToUnderscoresNamingStrategy());
-        return configuration.buildSessionFactory();
+        return buildSessionFactory(new Properties());
+    }
+
+    /**
+     * Свойства из {@code properties} переопределяют значения из hibernate.cfg.xml.
+     * Пул соединений закрывается вместе с SessionFactory. Если фабрик нужно несколько, используйте {@link HibernateBootstrap}
+     */
+    public static SessionFactory buildSessionFactory(Properties properties) {
+        return buildSessionFactory(buildMetadata(buildServiceRegistry(properties, true)));
+    }
+
+    /**
+     * Шина изменений User, Company, Payment и UserChat фабрики {sessionFactory}, построенной через HibernateUtil
+     * или {@link HibernateBootstrap}. Шина закрывается вместе с фабрикой
+     */
+    public static ChangeEventBus getChangeEventBus(SessionFactory sessionFactory) {
+        ChangeEventBus bus = CHANGE_EVENT_BUSES.get(sessionFactory);
+        if (bus == null) {
+            throw new IllegalArgumentException("Session factory is not open or was not built by HibernateUtil");
+        }
+        return bus;
+    }
+
+    static StandardServiceRegistry buildServiceRegistry(Properties properties, boolean closeWithSessionFactory) {
+        StandardServiceRegistryBuilder builder = new StandardServiceRegistryBuilder()
+                .configure()
+                .applySettings(properties);
+        if (!closeWithSessionFactory) {
+            builder.disableAutoClose();
+        }
+        Object statementInspector = properties.containsKey(AvailableSettings.STATEMENT_INSPECTOR)
+                ? properties.get(AvailableSettings.STATEMENT_INSPECTOR)
+                : builder.getAggregatedCfgXml().getConfigurationValues().get(AvailableSettings.STATEMENT_INSPECTOR);
+        builder.applySetting(AvailableSettings.STATEMENT_INSPECTOR, MetricsStatementInspector.wrap(statementInspector));
+        builder.applySetting(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, MetricsSessionEventListener.class.getName());
+        return builder.build();
+    }
+
+    static Metadata buildMetadata(StandardServiceRegistry serviceRegistry) {
+        return new MetadataSources(serviceRegistry)
+                .getMetadataBuilder()
+                .applyBasicType(BirthdayType.INSTANCE, Birthday.class.getName())
+                .applyPhysicalNamingStrategy(new CamelCaseToUnderscoresNamingStrategy())
+                .applyAuxiliaryDatabaseObject(new PaymentStatsDatabaseObject())
+                .applyAuxiliaryDatabaseObject(new UserSearchDatabaseObject())
+                .applyAuxiliaryDatabaseObject(new UserBirthdayDatabaseObject())
+                .build();
+    }
+
+    /**
+     * Собирает фабрику и, если задан {@link QueryWarmUp#EXECUTIONS}, прогревает её именованные запросы.
+     * Фабрики одного реестра делят его RegionFactory, поэтому регионы кэша каждой фабрики получают свой префикс
+     */
+    static SessionFactory buildSessionFactory(Metadata metadata) {
+        List<String> queryNames = metadata.getNamedQueryDefinitions().stream()
+                .map(NamedQueryDefinition::getName)
+                .sorted()
+                .toList();
+        String regionPrefix = ConfigurationHelper.getString(AvailableSettings.CACHE_REGION_PREFIX,
+                ((MetadataImplementor) metadata).getMetadataBuildingOptions().getServiceRegistry()
+                        .getService(ConfigurationService.class).getSettings(), "");
+        SessionFactory sessionFactory = metadata.getSessionFactoryBuilder()
+                .applyCacheRegionPrefix(regionPrefix + "sf-" + UUID.randomUUID())
+                .addSessionFactoryObservers(new MetricsObserver())
+                .build();
+        Map<String, Object> settings = sessionFactory.getProperties();
+        int executions = ConfigurationHelper.getInt(QueryWarmUp.EXECUTIONS, settings, 0);
+        if (executions > 0) {
+            new QueryWarmUp(sessionFactory, queryNames,
+                    ConfigurationHelper.getInt(QueryWarmUp.CONNECTIONS, settings, 1), executions).run();
+        }
+        return sessionFactory;
+    }
+
+    /**
+     * Подключает сбор {@link DaoMetrics}, публикует метрики DAO и статистику Hibernate в JMX
+     * и создаёт {@link ChangeEventBus} фабрики
+     */
+    private static class MetricsObserver implements SessionFactoryObserver {
+
+        private HibernateStatistics statistics;
+
+        @Override
+        public void sessionFactoryCreated(SessionFactory factory) {
+            SessionFactoryImplementor implementor = (SessionFactoryImplementor) factory;
+            ChangeEventBus changeEventBus = new ChangeEventBus();
+            EntityChangeListener changeListener = new EntityChangeListener(changeEventBus);
+            EventListenerRegistry listeners = implementor.getServiceRegistry().getService(EventListenerRegistry.class);
+            listeners.appendListeners(EventType.POST_LOAD, new EntityLoadCounter());
+            listeners.appendListeners(EventType.POST_COMMIT_INSERT, changeListener);
+            listeners.appendListeners(EventType.POST_COMMIT_UPDATE, changeListener);
+            listeners.appendListeners(EventType.POST_COMMIT_DELETE, changeListener);
+            CHANGE_EVENT_BUSES.put(factory, changeEventBus);
+            DaoMetrics.getInstance().registerMBean();
+            statistics = new HibernateStatistics(factory, implementor.getUuid());
+            statistics.register();
+        }
+
+        @Override
+        public void sessionFactoryClosed(SessionFactory factory) {
+            // вызывается и при неудачном создании фабрики, до sessionFactoryCreated
+            if (statistics != null) {
+                statistics.unregister();
+            }
+            ChangeEventBus changeEventBus = CHANGE_EVENT_BUSES.remove(factory);
+            if (changeEventBus != null) {
+                changeEventBus.close();
+            }
+        }
     }
 }
@@ -0,0 +1,164 @@
+package by.itacademy.hibernate.util;
+
+import org.hibernate.boot.model.relational.SimpleAuxiliaryDatabaseObject;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQL10Dialect;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Триггеры, поддерживающие таблицы receiver_payment_stats и company_payment_stats в актуальном состоянии
+ * при любой записи в payment: через Session, StatelessSession или COPY. Триггеры уровня оператора
+ * с transition tables (PostgreSQL 10+) агрегируют изменения всего INSERT/UPDATE/DELETE/COPY
+ * и обновляют каждую строку статистики один раз на оператор, а не на каждую выплату.
+ * Смена компании сотрудника переносит его суммы между компаниями.
+ */
+public class PaymentStatsDatabaseObject extends SimpleAuxiliaryDatabaseObject {
+
+    private static final String APPLY_FUNCTION = """
+            create or replace function payment_stats_apply(receiver_ids bigint[], sums bigint[], counts bigint[])
+            returns void language sql as $$
+                -- строки статистики блокируются в порядке ключа: параллельные операторы не ждут друг друга по кругу
+                insert into receiver_payment_stats as s (receiver_id, payment_sum, payment_count)
+                select d.receiver_id, sum(d.payment_sum), sum(d.payment_count)
+                from unnest(receiver_ids, sums, counts) as d(receiver_id, payment_sum, payment_count)
+                group by d.receiver_id
+                order by d.receiver_id
+                on conflict (receiver_id) do update
+                set payment_sum = s.payment_sum + excluded.payment_sum,
+                    payment_count = s.payment_count + excluded.payment_count;
+
+                insert into company_payment_stats as s (company_id, payment_sum, payment_count)
+                select u.company_id, sum(d.payment_sum), sum(d.payment_count)
+                from unnest(receiver_ids, sums, counts) as d(receiver_id, payment_sum, payment_count)
+                join users u on u.id = d.receiver_id
+                where u.company_id is not null
+                group by u.company_id
+                order by u.company_id
+                on conflict (company_id) do update
+                set payment_sum = s.payment_sum + excluded.payment_sum,
+                    payment_count = s.payment_count + excluded.payment_count;
+
+                delete from receiver_payment_stats where receiver_id = any(receiver_ids) and payment_count = 0;
+            $$
+            """;
+
+    private static final String PAYMENT_TRIGGER_FUNCTION = """
+            create or replace function payment_stats_refresh() returns trigger language plpgsql as $$
+            begin
+                if tg_op = 'INSERT' then
+                    perform payment_stats_apply(array_agg(d.receiver_id), array_agg(d.payment_sum), array_agg(d.payment_count))
+                    from (select receiver_id, sum(amount)::bigint as payment_sum, count(*) as payment_count
+                          from new_rows group by receiver_id) d;
+                elsif tg_op = 'DELETE' then
+                    perform payment_stats_apply(array_agg(d.receiver_id), array_agg(d.payment_sum), array_agg(d.payment_count))
+                    from (select receiver_id, -sum(amount)::bigint as payment_sum, -count(*) as payment_count
+                          from old_rows group by receiver_id) d;
+                else
+                    perform payment_stats_apply(array_agg(d.receiver_id), array_agg(d.payment_sum), array_agg(d.payment_count))
+                    from (select receiver_id, sum(amount)::bigint as payment_sum, sum(cnt) as payment_count
+                          from (select receiver_id, amount, 1 as cnt from new_rows
+                                union all
+                                select receiver_id, -amount, -1 from old_rows) changes
+                          group by receiver_id) d;
+                end if;
+                return null;
+            end
+            $$
+            """;
+
+    private static final String COMPANY_CHANGE_TRIGGER_FUNCTION = """
+            create or replace function payment_stats_move_company() returns trigger language plpgsql as $$
+            declare
+                stats receiver_payment_stats%ROWTYPE;
+            begin
+                -- блокировка строки: параллельная выплата сотруднику не изменит суммы, пока они переносятся
+                select * into stats from receiver_payment_stats where receiver_id = new.id for update;
+                if not found then
+                    return null;
+                end if;
+                if old.company_id is not null then
+                    update company_payment_stats
+                    set payment_sum = payment_sum - stats.payment_sum,
+                        payment_count = payment_count - stats.payment_count
+                    where company_id = old.company_id;
+                end if;
+                if new.company_id is not null then
+                    insert into company_payment_stats as s (company_id, payment_sum, payment_count)
+                    values (new.company_id, stats.payment_sum, stats.payment_count)
+                    on conflict (company_id) do update
+                    set payment_sum = s.payment_sum + excluded.payment_sum,
+                        payment_count = s.payment_count + excluded.payment_count;
+                end if;
+                return null;
+            end
+            $$
+            """;
+
+    private static final List<String> REBUILD = List.of(
+            "truncate receiver_payment_stats, company_payment_stats",
+            """
+            insert into receiver_payment_stats (receiver_id, payment_sum, payment_count)
+            select receiver_id, sum(amount), count(*) from payment group by receiver_id
+            """,
+            """
+            insert into company_payment_stats (company_id, payment_sum, payment_count)
+            select u.company_id, sum(p.amount), count(*) from payment p
+            join users u on u.id = p.receiver_id
+            where u.company_id is not null
+            group by u.company_id
+            """
+    );
+
+    private static final String[] CREATE = {
+            APPLY_FUNCTION,
+            PAYMENT_TRIGGER_FUNCTION,
+            COMPANY_CHANGE_TRIGGER_FUNCTION,
+            """
+            create trigger payment_stats_insert after insert on payment
+            referencing new table as new_rows
+            for each statement execute procedure payment_stats_refresh()
+            """,
+            """
+            create trigger payment_stats_update after update on payment
+            referencing old table as old_rows new table as new_rows
+            for each statement execute procedure payment_stats_refresh()
+            """,
+            """
+            create trigger payment_stats_delete after delete on payment
+            referencing old table as old_rows
+            for each statement execute procedure payment_stats_refresh()
+            """,
+            """
+            create trigger payment_stats_company_change after update of company_id on users
+            for each row when (old.company_id is distinct from new.company_id)
+            execute procedure payment_stats_move_company()
+            """,
+            REBUILD.get(1),
+            REBUILD.get(2)
+    };
+
+    private static final String[] DROP = {
+            "drop function if exists payment_stats_refresh() cascade",
+            "drop function if exists payment_stats_move_company() cascade",
+            "drop function if exists payment_stats_apply(bigint[], bigint[], bigint[]) cascade"
+    };
+
+    public PaymentStatsDatabaseObject() {
+        super(Collections.emptySet(), null, null, CREATE, DROP);
+    }
+
+    /**
+     * Операторы, пересчитывающие статистику по всем выплатам - после загрузки с отключёнными триггерами
+     * ({@code alter table payment disable trigger user})
+     */
+    public static List<String> rebuildStatements() {
+        return REBUILD;
+    }
+
+    @Override
+    public boolean appliesToDialect(Dialect dialect) {
+        return dialect instanceof PostgreSQL10Dialect;
+    }
+}
@@ -0,0 +1,99 @@
+package by.itacademy.hibernate.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Прогрев именованных запросов при старте, чтобы первые запросы после деплоя не платили за подготовку.
+ * HQL именованных запросов разбирается и транслируется в SQL ещё при сборке SessionFactory (ошибка в запросе
+ * не даёт фабрике собраться), а прогрев выполняет каждый запрос с параметрами {executions} раз на {connections}
+ * соединениях пула: драйвер PostgreSQL после prepareThreshold (по умолчанию 5) выполнений переводит запрос
+ * в серверный prepared statement и дальше не отправляет его на разбор.
+ * Параметры передаются как null, поэтому запросы ничего не находят и не нагружают базу.
+ * Запросы без параметров (полные выборки и агрегаты по всей таблице) не выполняются
+ */
+@Slf4j
+public class QueryWarmUp {
+
+    /**
+     * Число выполнений каждого запроса на соединении, 0 - прогрев при сборке фабрики отключён
+     */
+    public static final String EXECUTIONS = "hql_task.warm_up.executions";
+    /**
+     * Число прогреваемых соединений пула
+     */
+    public static final String CONNECTIONS = "hql_task.warm_up.connections";
+
+    private final SessionFactory sessionFactory;
+    private final Collection<String> queryNames;
+    private final int connections;
+    private final int executions;
+
+    public QueryWarmUp(SessionFactory sessionFactory, Collection<String> queryNames, int connections, int executions) {
+        if (connections <= 0 || executions <= 0) {
+            throw new IllegalArgumentException("Connections and executions must be positive");
+        }
+        this.sessionFactory = sessionFactory;
+        this.queryNames = List.copyOf(queryNames);
+        this.connections = connections;
+        this.executions = executions;
+    }
+
+    /**
+     * Прогревает запросы и возвращает число выполненных запросов. Ошибки отдельных запросов только логируются
+     */
+    public int run() {
+        long started = System.nanoTime();
+        int executed = 0;
+        List<Session> sessions = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                Session session = sessionFactory.openSession();
+                sessions.add(session);
+                session.setDefaultReadOnly(true);
+                // транзакция удерживает соединение, поэтому каждая сессия получает из пула своё
+                session.beginTransaction();
+            }
+            for (Session session : sessions) {
+                for (String queryName : queryNames) {
+                    executed += execute(session, queryName);
+                }
+            }
+        } finally {
+            for (Session session : sessions) {
+                if (session.getTransaction().isActive()) {
+                    session.getTransaction().rollback();
+                }
+                session.close();
+            }
+        }
+        log.info("Query warm-up: {} named queries, {} executions in {} ms",
+                queryNames.size(), executed, (System.nanoTime() - started) / 1_000_000);
+        return executed;
+    }
+
+    private int execute(Session session, String queryName) {
+        try {
+            Query<?> query = session.createNamedQuery(queryName);
+            if (query.getParameterMetadata().getNamedParameterNames().isEmpty()) {
+                return 0;
+            }
+            for (String parameter : query.getParameterMetadata().getNamedParameterNames()) {
+                query.setParameter(parameter, null);
+            }
+            for (int i = 0; i < executions; i++) {
+                query.list();
+            }
+            return executions;
+        } catch (RuntimeException e) {
+            log.warn("Unable to warm up query {}", queryName, e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package by.itacademy.hibernate.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Маршрутизация сессий между основной базой и репликами: пишущие сессии открываются как обычно через
+ * {@link SessionFactory} (основная база), read-only сессии - на соединении одной из реплик по кругу.
+ * <p>
+ * Фабрика одна, поэтому метамодель и кэш второго уровня общие: записи через основную базу инвалидируют кэш,
+ * а read-only сессии работают в {@link CacheMode#GET} и не кладут в кэш данные отстающей реплики.
+ * <p>
+ * Реплики проверяются каждые {healthCheckInterval}; недоступная реплика исключается до следующей успешной проверки,
+ * без доступных реплик чтение идёт в основную базу. Для read-your-writes сессии передаётся {@link ReadYourWrites}:
+ * пока с последней записи не прошло {replicationLag}, чтение этого клиента тоже идёт в основную базу
+ */
+@Slf4j
+public class ReadReplicaRouter implements AutoCloseable {
+
+    public static final Duration DEFAULT_HEALTH_CHECK_INTERVAL = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_REPLICATION_LAG = Duration.ofSeconds(1);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final SessionFactory sessionFactory;
+    private final List<DataSource> replicas;
+    private final Duration replicationLag;
+    private final ScheduledExecutorService healthChecker;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<DataSource> healthyReplicas;
+    /**
+     * Реплики, исключённые {@link #markUnhealthy} с начала текущей проверки. Доступ - под монитором роутера
+     */
+    private final Set<DataSource> failedDuringCheck = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public ReadReplicaRouter(SessionFactory sessionFactory, List<DataSource> replicas) {
+        this(sessionFactory, replicas, DEFAULT_HEALTH_CHECK_INTERVAL, DEFAULT_REPLICATION_LAG);
+    }
+
+    public ReadReplicaRouter(SessionFactory sessionFactory, List<DataSource> replicas,
+                             Duration healthCheckInterval, Duration replicationLag) {
+        if (healthCheckInterval.isNegative() || healthCheckInterval.isZero()) {
+            throw new IllegalArgumentException("Health check interval must be positive");
+        }
+        if (replicationLag.isNegative()) {
+            throw new IllegalArgumentException("Replication lag must not be negative");
+        }
+        this.sessionFactory = sessionFactory;
+        this.replicas = List.copyOf(replicas);
+        this.replicationLag = replicationLag;
+        this.healthyReplicas = this.replicas;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkReplicas();
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas,
+                healthCheckInterval.toMillis(), healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Открывает сессию на основной базе
+     */
+    public Session openSession() {
+        return sessionFactory.openSession();
+    }
+
+    /**
+     * Открывает сессию на основной базе; успешные транзакции сессии отмечаются в {readYourWrites}
+     */
+    public Session openSession(ReadYourWrites readYourWrites) {
+        return sessionFactory.withOptions()
+                .eventListeners(new BaseSessionEventListener() {
+                    @Override
+                    public void transactionCompletion(boolean successful) {
+                        if (successful) {
+                            readYourWrites.written();
+                        }
+                    }
+                })
+                .openSession();
+    }
+
+    /**
+     * Открывает read-only сессию на одной из доступных реплик, без доступных реплик - на основной базе
+     */
+    public Session openReadOnlySession() {
+        List<DataSource> candidates = healthyReplicas;
+        for (int attempt = 0; attempt < candidates.size(); attempt++) {
+            DataSource replica = candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+            Connection connection;
+            try {
+                connection = replica.getConnection();
+            } catch (SQLException e) {
+                log.warn("Replica {} is unavailable, trying the next one", replica, e);
+                markUnhealthy(replica);
+                continue;
+            }
+            return openReadOnlySession(connection);
+        }
+        return readOnly(sessionFactory.openSession());
+    }
+
+    /**
+     * Открывает read-only сессию, которая видит записи, отмеченные в {readYourWrites}: на основной базе,
+     * если с последней записи не прошло {replicationLag}, иначе - на реплике
+     */
+    public Session openReadOnlySession(ReadYourWrites readYourWrites) {
+        return readYourWrites.writtenWithin(replicationLag)
+                ? readOnly(sessionFactory.openSession())
+                : openReadOnlySession();
+    }
+
+    /**
+     * Число реплик, прошедших последнюю проверку
+     */
+    public int getHealthyReplicaCount() {
+        return healthyReplicas.size();
+    }
+
+    /**
+     * Проверяет все реплики и обновляет список доступных. Вызывается по расписанию.
+     * Реплики проверяются без блокировки, а результат публикуется под тем же монитором, что и {@link #markUnhealthy}:
+     * реплика, исключённая во время проверки, не возвращается в список до следующей проверки
+     */
+    public void checkReplicas() {
+        synchronized (this) {
+            failedDuringCheck.clear();
+        }
+        List<DataSource> probed = replicas.stream()
+                .filter(ReadReplicaRouter::isHealthy)
+                .toList();
+        synchronized (this) {
+            List<DataSource> healthy = probed.stream()
+                    .filter(replica -> !failedDuringCheck.contains(replica))
+                    .toList();
+            if (healthy.size() != healthyReplicas.size()) {
+                log.info("{} of {} replicas are healthy", healthy.size(), replicas.size());
+            }
+            healthyReplicas = healthy;
+        }
+    }
+
+    /**
+     * Останавливает проверки реплик. Сами DataSource реплик и SessionFactory закрывает владелец
+     */
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+    }
+
+    private Session openReadOnlySession(Connection connection) {
+        try {
+            connection.setReadOnly(true);
+            return readOnly(sessionFactory.withOptions()
+                    .connection(connection)
+                    .eventListeners(new BaseSessionEventListener() {
+                        @Override
+                        public void end() {
+                            // соединение, переданное сессии, Hibernate не закрывает - возвращаем его в пул реплики
+                            close(connection);
+                        }
+                    })
+                    .openSession());
+        } catch (SQLException | HibernateException e) {
+            close(connection);
+            throw e instanceof HibernateException hibernateException
+                    ? hibernateException
+                    : new HibernateException("Unable to open replica session", e);
+        }
+    }
+
+    private static Session readOnly(Session session) {
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        session.setCacheMode(CacheMode.GET);
+        return session;
+    }
+
+    private synchronized void markUnhealthy(DataSource replica) {
+        failedDuringCheck.add(replica);
+        healthyReplicas = healthyReplicas.stream()
+                .filter(candidate -> candidate != replica)
+                .toList();
+    }
+
+    private static boolean isHealthy(DataSource replica) {
+        try (Connection connection = replica.getConnection()) {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            log.debug("Replica {} failed the health check", replica, e);
+            return false;
+        }
+    }
+
+    private static void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Unable to close replica connection", e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package by.itacademy.hibernate.util;
+
+import java.time.Duration;
+
+/**
+ * Маркер клиента (например, HTTP-сессии) для {@link ReadReplicaRouter}: время последней успешной записи клиента.
+ * Один маркер передаётся и пишущим, и читающим сессиям этого клиента
+ */
+public class ReadYourWrites {
+
+    private volatile long lastWriteNanos;
+    private volatile boolean written;
+
+    void written() {
+        lastWriteNanos = System.nanoTime();
+        written = true;
+    }
+
+    boolean writtenWithin(Duration duration) {
+        return written && System.nanoTime() - lastWriteNanos < duration.toNanos();
+    }
+}
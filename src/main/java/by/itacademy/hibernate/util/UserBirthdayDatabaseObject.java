@@ -0,0 +1,29 @@
+package by.itacademy.hibernate.util;
+
+import org.hibernate.boot.model.relational.SimpleAuxiliaryDatabaseObject;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQL10Dialect;
+
+import java.util.Collections;
+
+/**
+ * Индекс по дню рождения без года (month * 100 + day) для поиска ближайших дней рождения
+ * (см. {@link by.itacademy.hibernate.dao.UserDao#findUpcomingBirthdays}). Запрос должен использовать
+ * в точности то же выражение, иначе PostgreSQL не применит индекс
+ */
+public class UserBirthdayDatabaseObject extends SimpleAuxiliaryDatabaseObject {
+
+    private static final String[] CREATE = {
+            "create index users_birthday_month_day_idx on users ((extract(month from birth_date) * 100 + extract(day from birth_date)))"
+    };
+
+    public UserBirthdayDatabaseObject() {
+        // индекс удаляется вместе с таблицей users
+        super(Collections.emptySet(), null, null, CREATE, new String[0]);
+    }
+
+    @Override
+    public boolean appliesToDialect(Dialect dialect) {
+        return dialect instanceof PostgreSQL10Dialect;
+    }
+}
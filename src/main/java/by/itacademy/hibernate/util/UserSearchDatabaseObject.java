@@ -0,0 +1,36 @@
+package by.itacademy.hibernate.util;
+
+import org.hibernate.boot.model.relational.SimpleAuxiliaryDatabaseObject;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQL10Dialect;
+
+import java.util.Collections;
+
+/**
+ * Индексы поиска сотрудников по имени, фамилии и username (см. {@link by.itacademy.hibernate.dao.UserDao#searchByName}):
+ * btree с text_pattern_ops отдаёт совпадения по префиксу {@code like 'abc%'} в порядке {@code ~<~} при любой collation,
+ * GIN-индекс pg_trgm - нечёткий поиск оператором {@code %}, кандидаты отбираются по числу общих триграмм.
+ * Индексы построены по {@code lower(...)}, поэтому запросы должны сравнивать именно эти выражения
+ */
+public class UserSearchDatabaseObject extends SimpleAuxiliaryDatabaseObject {
+
+    private static final String[] CREATE = {
+            "create extension if not exists pg_trgm",
+            "create index users_firstname_prefix_idx on users (lower(firstname) text_pattern_ops)",
+            "create index users_lastname_prefix_idx on users (lower(lastname) text_pattern_ops)",
+            "create index users_username_prefix_idx on users (lower(username) text_pattern_ops)",
+            "create index users_firstname_trgm_idx on users using gin (lower(firstname) gin_trgm_ops)",
+            "create index users_lastname_trgm_idx on users using gin (lower(lastname) gin_trgm_ops)",
+            "create index users_username_trgm_idx on users using gin (lower(username) gin_trgm_ops)"
+    };
+
+    public UserSearchDatabaseObject() {
+        // индексы удаляются вместе с таблицей users
+        super(Collections.emptySet(), null, null, CREATE, new String[0]);
+    }
+
+    @Override
+    public boolean appliesToDialect(Dialect dialect) {
+        return dialect instanceof PostgreSQL10Dialect;
+    }
+}
@@ -0,0 +1,145 @@
+package by.itacademy.hibernate.analytics;
+
+import by.itacademy.hibernate.change.ChangeEventBus;
+import by.itacademy.hibernate.dao.UserDao;
+import by.itacademy.hibernate.dto.CompanyAvgPayment;
+import by.itacademy.hibernate.dto.UserAvgPayment;
+import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.util.HibernateUtil;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class PaymentSnapshotTest {
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+    private final UserDao userDao = UserDao.getInstance();
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void answersLikeUserDaoAndRefreshesIncrementally() {
+        PaymentSnapshot snapshot = new PaymentSnapshot(sessionFactory, 4);
+
+        assertThat(snapshot.refresh()).isEqualTo(14);
+        assertMatchesDatabase(snapshot);
+        assertThat(snapshot.findAveragePaymentAmountByFirstAndLastNames("Bill", "Gates")).isEqualTo(300.0);
+        assertThat(snapshot.findAveragePaymentAmountByFirstAndLastNames("Larry", "Page")).isZero();
+
+        long highWaterMark = snapshot.getHighWaterMark();
+        inTransaction(session -> {
+            User billGates = userDao.findByUsername(session, "BillGates").orElseThrow();
+            session.save(Payment.builder().amount(2_100).receiver(billGates).build());
+            return null;
+        });
+
+        assertThat(snapshot.refresh()).isEqualTo(1);
+        assertThat(snapshot.getHighWaterMark()).isGreaterThan(highWaterMark);
+        assertThat(snapshot.size()).isEqualTo(15);
+        assertMatchesDatabase(snapshot);
+        assertThat(snapshot.findAveragePaymentAmountByFirstAndLastNames("Bill", "Gates")).isEqualTo(750.0);
+        assertThat(snapshot.refresh()).isZero();
+    }
+
+    @Test
+    void rebuildsAfterPaymentChange() {
+        PaymentSnapshot snapshot = new PaymentSnapshot(sessionFactory);
+        snapshot.subscribeTo(HibernateUtil.getChangeEventBus(sessionFactory));
+        int size = snapshot.refresh();
+
+        inTransaction(session -> {
+            Payment payment = userDao.findAllPaymentsByCompanyName(session, "Google").get(0);
+            payment.setAmount(payment.getAmount() + 1_000);
+            return null;
+        });
+        assertThat(HibernateUtil.getChangeEventBus(sessionFactory).awaitDispatched(Duration.ofSeconds(5))).isTrue();
+
+        assertThat(snapshot.isStale()).isTrue();
+        assertThat(snapshot.refresh()).isEqualTo(size);
+        assertThat(snapshot.isStale()).isFalse();
+        assertMatchesDatabase(snapshot);
+    }
+
+    @Test
+    void rebuildsAfterPaymentCommittedBelowHighWaterMark() {
+        PaymentSnapshot snapshot = new PaymentSnapshot(sessionFactory);
+        ChangeEventBus bus = HibernateUtil.getChangeEventBus(sessionFactory);
+        snapshot.subscribeTo(bus);
+        snapshot.refresh();
+
+        // id выдаются из одного pooled-блока, но коммитятся в обратном порядке
+        Session late = sessionFactory.openSession();
+        late.beginTransaction();
+        Payment latePayment = Payment.builder().amount(700)
+                .receiver(userDao.findByUsername(late, "TimCook").orElseThrow()).build();
+        late.save(latePayment);
+        late.flush();
+        Payment earlyPayment = inTransaction(session -> {
+            // другой получатель и компания: триггер payment_stats не ждёт блокировку строки статистики
+            Payment payment = Payment.builder().amount(900)
+                    .receiver(userDao.findByUsername(session, "BillGates").orElseThrow()).build();
+            session.save(payment);
+            return payment;
+        });
+        try {
+            assertThat(latePayment.getId()).isLessThan(earlyPayment.getId());
+            assertThat(bus.awaitDispatched(Duration.ofSeconds(5))).isTrue();
+            assertThat(snapshot.refresh()).isEqualTo(1);
+            assertThat(snapshot.isStale()).isFalse();
+
+            late.getTransaction().commit();
+            late.close();
+            assertThat(bus.awaitDispatched(Duration.ofSeconds(5))).isTrue();
+
+            assertThat(snapshot.isStale()).isTrue();
+            snapshot.refresh();
+            assertMatchesDatabase(snapshot);
+        } finally {
+            if (late.isOpen()) {
+                late.getTransaction().rollback();
+                late.close();
+            }
+            inTransaction(session -> session.createQuery("delete from Payment p where p.id in :ids")
+                    .setParameter("ids", List.of(latePayment.getId(), earlyPayment.getId()))
+                    .executeUpdate());
+        }
+    }
+
+    private void assertMatchesDatabase(PaymentSnapshot snapshot) {
+        List<CompanyAvgPayment> companyAverages = inTransaction(userDao::findCompanyAvgPayments);
+        List<UserAvgPayment> usersAboveOverall = inTransaction(userDao::findUsersWithAvgPaymentAboveOverall);
+
+        assertThat(snapshot.findCompanyAvgPayments()).isEqualTo(companyAverages);
+        assertThat(snapshot.findUsersWithAvgPaymentAboveOverall()).isEqualTo(usersAboveOverall);
+    }
+
+    private <T> T inTransaction(Function<Session, T> query) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        T result = query.apply(session);
+        session.getTransaction().commit();
+        return result;
+    }
+}
@@ -0,0 +1,164 @@
+package by.itacademy.hibernate.change;
+
+import by.itacademy.hibernate.dao.UserDao;
+import by.itacademy.hibernate.entity.Chat;
+import by.itacademy.hibernate.entity.Company;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.util.HibernateUtil;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class ChangeEventBusTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+    private final UserDao userDao = UserDao.getInstance();
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void publishesCommittedChangesWithChangedAttributes() {
+        ChangeEventBus bus = HibernateUtil.getChangeEventBus(sessionFactory);
+        List<EntityChange> received = new CopyOnWriteArrayList<>();
+        ChangeSubscriber subscriber = received::addAll;
+        bus.subscribe(subscriber);
+        try {
+            inTransaction(session -> userDao.findByUsername(session, "TimCook").orElseThrow()
+                    .getPersonalInfo().setLastname("Cooke"));
+            inTransaction(session -> session.save(Company.builder().name("Oracle").build()));
+            inTransaction(session -> session.save(Chat.builder().name("untracked").build()));
+
+            Session rolledBack = sessionFactory.openSession();
+            rolledBack.beginTransaction();
+            rolledBack.save(Company.builder().name("Rolled back").build());
+            rolledBack.flush();
+            rolledBack.getTransaction().rollback();
+            rolledBack.close();
+
+            assertThat(bus.awaitDispatched(TIMEOUT)).isTrue();
+            assertThat(received).hasSize(2);
+            assertThat(received.get(0).entityType()).isEqualTo(User.class);
+            assertThat(received.get(0).type()).isEqualTo(ChangeType.UPDATE);
+            assertThat(received.get(0).changedAttributes()).isEqualTo(Set.of("personalInfo"));
+            assertThat(received.get(0).affects(User.class, "personalInfo")).isTrue();
+            assertThat(received.get(0).affects(User.class, "company")).isFalse();
+            assertThat(received.get(1).entityType()).isEqualTo(Company.class);
+            assertThat(received.get(1).type()).isEqualTo(ChangeType.INSERT);
+            assertThat(received.get(1).changedAttributes()).isEmpty();
+        } finally {
+            bus.unsubscribe(subscriber);
+        }
+    }
+
+    @Test
+    void deliversConcurrentPublicationsInBatches() throws InterruptedException {
+        try (ChangeEventBus bus = new ChangeEventBus(1 << 12, 100)) {
+            AtomicLong delivered = new AtomicLong();
+            List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+            bus.subscribe(changes -> {
+                delivered.addAndGet(changes.size());
+                batchSizes.add(changes.size());
+            });
+            bus.subscribe(changes -> {
+                throw new IllegalStateException("failing subscriber must not stop delivery");
+            });
+
+            int threads = 4;
+            int perThread = 500;
+            CountDownLatch done = new CountDownLatch(threads);
+            IntStream.range(0, threads).forEach(thread -> new Thread(() -> {
+                for (long id = 0; id < perThread; id++) {
+                    while (!bus.publish(new EntityChange(User.class, id, ChangeType.UPDATE, Set.of()))) {
+                        Thread.onSpinWait();
+                    }
+                }
+                done.countDown();
+            }).start());
+
+            assertThat(done.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS)).isTrue();
+            assertThat(bus.awaitDispatched(TIMEOUT)).isTrue();
+            assertThat(delivered).hasValue((long) threads * perThread);
+            assertThat(batchSizes).allMatch(size -> size <= 100);
+        }
+    }
+
+    @Test
+    void dropsChangesWhenFullAndReportsOverflow() {
+        try (ChangeEventBus bus = new ChangeEventBus(4, 10)) {
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicLong lost = new AtomicLong();
+            bus.subscribe(new ChangeSubscriber() {
+                @Override
+                public void onChanges(List<EntityChange> changes) {
+                    blocked.countDown();
+                    await(release);
+                }
+
+                @Override
+                public void onOverflow(long count) {
+                    lost.addAndGet(count);
+                }
+            });
+
+            assertThat(bus.publish(change(0))).isTrue();
+            await(blocked);
+            assertThat(IntStream.range(1, 5).mapToObj(id -> bus.publish(change(id)))).containsOnly(true);
+            assertThat(bus.publish(change(5))).isFalse();
+            assertThat(bus.getDroppedCount()).isEqualTo(1);
+
+            release.countDown();
+            assertThat(bus.awaitDispatched(TIMEOUT)).isTrue();
+            assertThat(lost).hasValue(1);
+        }
+    }
+
+    private static EntityChange change(long id) {
+        return new EntityChange(User.class, id, ChangeType.DELETE, Set.of());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void inTransaction(Consumer<Session> work) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        work.accept(session);
+        session.getTransaction().commit();
+    }
+}
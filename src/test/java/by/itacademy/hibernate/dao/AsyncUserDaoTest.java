@@ -0,0 +1,96 @@
+package by.itacademy.hibernate.dao;
+
+import by.itacademy.hibernate.dto.CompanyAvgPayment;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.util.HibernateUtil;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class AsyncUserDaoTest {
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void fansOutIndependentQueries() {
+        try (AsyncUserDao asyncUserDao = new AsyncUserDao(sessionFactory)) {
+            CompletableFuture<List<CompanyAvgPayment>> averages = asyncUserDao.findCompanyAvgPayments();
+            CompletableFuture<List<User>> users = asyncUserDao.findAll(FetchPlan.of(UserAssociation.COMPANY));
+
+            CompletableFuture.allOf(averages, users).join();
+
+            assertThat(averages.join()).extracting(CompanyAvgPayment::name)
+                    .containsExactly("Apple", "Google", "Microsoft");
+            assertThat(users.join()).hasSize(5)
+                    .allMatch(user -> Hibernate.isInitialized(user.getCompany()));
+        }
+    }
+
+    @Test
+    void rejectsCallsWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (AsyncUserDao asyncUserDao = new AsyncUserDao(sessionFactory, 1, 1, Duration.ofSeconds(10))) {
+            CompletableFuture<Boolean> blocking = asyncUserDao.execute(session -> {
+                started.countDown();
+                return await(release);
+            });
+            started.await();
+            CompletableFuture<List<User>> queued = asyncUserDao.findAll(FetchPlan.NONE);
+
+            CompletableFuture<List<User>> rejected = asyncUserDao.findAll(FetchPlan.NONE);
+
+            assertThat(rejected).isCompletedExceptionally();
+            assertThat(rejected.handle((value, error) -> error).join()).isInstanceOf(RejectedExecutionException.class);
+            release.countDown();
+            assertThat(blocking.join()).isTrue();
+            assertThat(queued.join()).hasSize(5);
+        }
+    }
+
+    @Test
+    void cancelsQueryOnTimeout() {
+        try (AsyncUserDao asyncUserDao = new AsyncUserDao(sessionFactory, 1, 1, Duration.ofSeconds(10))) {
+            CompletableFuture<Object> slow = asyncUserDao.execute(
+                    session -> session.createNativeQuery("select pg_sleep(30)").getSingleResult(), Duration.ofMillis(200));
+
+            assertThat(slow.handle((value, error) -> error).join()).isInstanceOf(TimeoutException.class);
+            assertThat(asyncUserDao.findByUsername("BillGates").orTimeout(5, TimeUnit.SECONDS).join()).isPresent();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
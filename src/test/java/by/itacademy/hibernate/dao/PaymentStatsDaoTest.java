@@ -0,0 +1,79 @@
+package by.itacademy.hibernate.dao;
+
+import by.itacademy.hibernate.dto.CompanyAvgPayment;
+import by.itacademy.hibernate.dto.UserAvgPayment;
+import by.itacademy.hibernate.entity.Company;
+import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.util.HibernateUtil;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class PaymentStatsDaoTest {
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+    private final PaymentStatsDao paymentStatsDao = PaymentStatsDao.getInstance();
+    private final UserDao userDao = UserDao.getInstance();
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void aggregatesFollowPaymentAndCompanyChanges() {
+        assertStatsMatchFullScan();
+
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        User timCook = userDao.findByUsername(session, "TimCook").orElseThrow();
+        Payment bonus = Payment.builder().receiver(timCook).amount(2000).build();
+        session.save(bonus);
+        session.flush();
+        bonus.setAmount(1200);
+        session.flush();
+        session.delete(session.get(Payment.class, timCook.getPayments().get(0).getId()));
+        session.getTransaction().commit();
+        assertStatsMatchFullScan();
+
+        session.beginTransaction();
+        Company microsoft = CompanyDao.getInstance().findByName(session, "Microsoft").orElseThrow();
+        session.get(User.class, timCook.getId()).setCompany(microsoft);
+        session.getTransaction().commit();
+        assertStatsMatchFullScan();
+    }
+
+    private void assertStatsMatchFullScan() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<CompanyAvgPayment> companies = paymentStatsDao.findCompanyAvgPayments(session);
+        assertThat(companies).isEqualTo(userDao.findCompanyAvgPayments(session));
+
+        List<UserAvgPayment> users = paymentStatsDao.findUsersWithAvgPaymentAboveOverall(session);
+        assertThat(users).isEqualTo(userDao.findUsersWithAvgPaymentAboveOverall(session));
+
+        assertThat(paymentStatsDao.findAveragePaymentAmountByFirstAndLastNames(session, "Tim", "Cook"))
+                .isEqualTo(userDao.findAveragePaymentAmountByFirstAndLastNames(session, "Tim", "Cook"));
+        assertThat(paymentStatsDao.findAveragePaymentAmountByFirstAndLastNames(session, "No", "Body")).isZero();
+
+        session.getTransaction().commit();
+    }
+}
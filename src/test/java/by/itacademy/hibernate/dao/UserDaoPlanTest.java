@@ -0,0 +1,237 @@
+package by.itacademy.hibernate.dao;
+
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.util.HibernateUtil;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+/**
+ * Проверяет планы выборочных запросов {@link UserDao} на 100k сотрудников и 500k выплат: ни один запрос
+ * не должен читать большую таблицу целиком - ни последовательным сканом, ни обходом индекса с отбрасыванием строк
+ * через Filter без Index Cond, - а фильтр каждого DAO-метода должен попадать в Index Cond. SQL перехватывается {@link StatementInspector} и объясняется как generic plan
+ * ({@code plan_cache_mode = force_generic_plan}) - план не зависит от значений параметров и совпадает с тем,
+ * который PostgreSQL закэширует для подготовленного запроса драйвера.
+ * Агрегаты по всем выплатам (findCompanyAvgPayments и т.п.) читают таблицу целиком по определению и здесь не проверяются
+ */
+@TestInstance(PER_CLASS)
+class UserDaoPlanTest {
+
+    /**
+     * Справочники company и chat маленькие, их полное чтение дешевле индекса и допустимо
+     */
+    private static final Pattern LARGE_TABLE_SCAN = Pattern.compile("Seq Scan on (users|payment|users_chat|profile) ");
+    private static final Pattern LARGE_TABLE_INDEX_SCAN =
+            Pattern.compile("Index (Only )?Scan (Backward )?using \\S+ on (users|payment|users_chat|profile) ");
+    private static final List<String> STATEMENTS = new ArrayList<>();
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory(inspectedProperties());
+    private final UserDao userDao = UserDao.getInstance();
+
+    @BeforeAll
+    public void initDb() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("""
+                        insert into company (id, name)
+                        select g, 'Company ' || g from generate_series(1, 1000) g
+                        """);
+                statement.execute("""
+                        insert into users (id, firstname, lastname, birth_date, username, role, company_id)
+                        select g, 'First' || g % 5000, 'Last' || g % 7919, date '1950-01-01' + g % 20000,
+                               'user' || g, 'USER', 1 + g % 1000
+                        from generate_series(1, 100000) g
+                        """);
+                statement.execute("""
+                        insert into payment (id, amount, receiver_id)
+                        select g, 100 + g % 900, 1 + (g::bigint * 7919) % 100000
+                        from generate_series(1, 500000) g
+                        """);
+                statement.execute("""
+                        insert into profile (id, user_id, street, language)
+                        select g, g, 'Street ' || g, 'en' from generate_series(1, 100000) g
+                        """);
+                statement.execute("insert into chat (id, name) select g, 'Chat ' || g from generate_series(1, 1000) g");
+                statement.execute("""
+                        insert into users_chat (id, user_id, chat_id)
+                        select g, 1 + g % 100000, 1 + g % 1000 from generate_series(1, 200000) g
+                        """);
+                statement.execute("analyze");
+            }
+        });
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void usersByNameAndBirthdayUseIndexes() {
+        assertUsesIndexes(session -> userDao.findAllByFirstName(session, "First42"),
+                "(firstname)::text = $1");
+        assertUsesIndexes(session -> userDao.findLimitedUsersOrderedByBirthday(session, 10));
+        assertUsesIndexes(session -> userDao.findUsersOrderedByBirthday(session, null, 10),
+                "birth_date IS NOT NULL");
+        Slice<User> page = inTransaction(session -> userDao.findUsersOrderedByBirthday(session, null, 10));
+        assertUsesIndexes(session -> userDao.findUsersOrderedByBirthday(session, page.nextCursor(), 10),
+                "ROW(birth_date, id) > ROW($1, $2)");
+    }
+
+    @Test
+    void usersByAgeAndUpcomingBirthdayUseIndexes() {
+        assertUsesIndexes(session -> userDao.findAllByAgeBetween(session, 30, 35),
+                "(birth_date > $1) AND (birth_date <= $2)");
+        assertUsesIndexes(session -> userDao.findUpcomingBirthdays(session, 7),
+                "EXTRACT(month FROM birth_date)");
+    }
+
+    @Test
+    void usersByCompanyUseIndexes() {
+        assertUsesIndexes(session -> userDao.findAllByCompanyName(session, "Company 7",
+                        FetchPlan.of(UserAssociation.PROFILE, UserAssociation.USER_CHATS, UserAssociation.PAYMENTS)),
+                "(company_id = $1)", "(user_id = user0_.id)", "(receiver_id = ANY (", "(user_id = ANY (");
+        Slice<User> page = inTransaction(session -> userDao.findAllByCompanyName(session, "Company 8", null, 10));
+        assertUsesIndexes(session -> userDao.findAllByCompanyName(session, "Company 8", page.nextCursor(), 10),
+                "((company_id = $1) AND (id > $2))");
+    }
+
+    @Test
+    void usersByFilterUseIndexes() {
+        assertUsesIndexes(session -> userDao.findAll(session, UserFilter.builder().firstName("First42").minAge(30).build()),
+                "(firstname)::text = $1");
+        assertUsesIndexes(session -> userDao.findAll(session,
+                        UserFilter.builder().companyName("Company 7").minAveragePayment(500.0).build()),
+                "(company_id = company1_.id)", "(receiver_id = user0_.id)");
+    }
+
+    @Test
+    void paymentsByReceiverUseIndexes() {
+        assertUsesIndexes(session -> userDao.findAllPaymentsByCompanyName(session, "Company 9"),
+                "(company_id = $1)", "(receiver_id = user0_.id)", "(id = ANY (");
+        assertUsesIndexes(session -> userDao.scrollAllPaymentsByCompanyName(session, "Company 10", 1000, payment -> {
+                }),
+                "(company_id = $1)", "(receiver_id = user1_.id)");
+        assertUsesIndexes(session -> userDao.findAveragePaymentAmountByFirstAndLastNames(session, "First42", "Last42"),
+                "(((firstname)::text = $1) AND ((lastname)::text = $2))", "(receiver_id = user1_.id)");
+    }
+
+    /**
+     * Выполняет {query} и проверяет планы всех его SQL-запросов: нет полного чтения больших таблиц,
+     * а каждое из {indexConditions} встречается в одной из строк Index Cond
+     */
+    private void assertUsesIndexes(Consumer<Session> query, String... indexConditions) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        STATEMENTS.clear();
+        query.accept(session);
+        List<String> statements = List.copyOf(STATEMENTS);
+        assertThat(statements).isNotEmpty();
+
+        List<String> indexConds = new ArrayList<>();
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("set local plan_cache_mode = force_generic_plan");
+            }
+            for (String sql : statements) {
+                List<String> plan = explain(connection, sql);
+                assertThat(plan)
+                        .as(sql)
+                        .noneMatch(line -> LARGE_TABLE_SCAN.matcher(line).find());
+                assertNoFilteredIndexScans(sql, plan);
+                plan.stream().filter(line -> line.contains("Index Cond: ")).forEach(indexConds::add);
+            }
+        });
+        session.getTransaction().rollback();
+
+        for (String indexCondition : indexConditions) {
+            assertThat(indexConds)
+                    .as("Index Cond with %s in plans of%n%s", indexCondition, String.join(System.lineSeparator(), statements))
+                    .anyMatch(line -> line.contains(indexCondition));
+        }
+    }
+
+    /**
+     * Индексный скан большой таблицы с Filter, но без Index Cond, обходит индекс с начала и отбрасывает строки
+     * по одной - так же медленно, как последовательный скан. Свойства узла плана идут сразу за ним, до первого "->"
+     */
+    private static void assertNoFilteredIndexScans(String sql, List<String> plan) {
+        for (int i = 0; i < plan.size(); i++) {
+            if (!LARGE_TABLE_INDEX_SCAN.matcher(plan.get(i)).find()) {
+                continue;
+            }
+            boolean indexCond = false;
+            boolean filter = false;
+            for (int j = i + 1; j < plan.size() && !plan.get(j).contains("->"); j++) {
+                indexCond |= plan.get(j).contains("Index Cond: ");
+                filter |= plan.get(j).contains("Filter: ");
+            }
+            assertThat(filter && !indexCond)
+                    .as("%s filters a whole index in%n%s", plan.get(i).strip(), sql)
+                    .isFalse();
+        }
+    }
+
+    private <T> T inTransaction(Function<Session, T> query) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        T result = query.apply(session);
+        session.getTransaction().commit();
+        return result;
+    }
+
+    private static List<String> explain(Connection connection, String sql) throws SQLException {
+        int parameters = 0;
+        StringBuilder prepared = new StringBuilder();
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                prepared.append('$').append(++parameters);
+            } else {
+                prepared.append(c);
+            }
+        }
+        List<String> plan = new ArrayList<>();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("prepare plan_test as " + prepared);
+            try (ResultSet resultSet = statement.executeQuery(
+                    "explain execute plan_test" + (parameters == 0 ? "" : "(" + "null, ".repeat(parameters - 1) + "null)"))) {
+                while (resultSet.next()) {
+                    plan.add(resultSet.getString(1));
+                }
+            } finally {
+                statement.execute("deallocate plan_test");
+            }
+        }
+        return plan;
+    }
+
+    private static Properties inspectedProperties() {
+        Properties properties = new Properties();
+        properties.put(AvailableSettings.STATEMENT_INSPECTOR, (StatementInspector) sql -> {
+            STATEMENTS.add(sql);
+            return sql;
+        });
+        return properties;
+    }
+}
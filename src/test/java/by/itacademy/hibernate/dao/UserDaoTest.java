@@ -1,19 +1,36 @@
 package by.itacademy.hibernate.dao;
 
 
+import by.itacademy.hibernate.dto.CompanyAgeBucket;
+import by.itacademy.hibernate.dto.CompanyAvgPayment;
+import by.itacademy.hibernate.dto.UserAvgPayment;
+import by.itacademy.hibernate.dto.UserSearchHit;
+import by.itacademy.hibernate.utils.StatementCounter;
 import by.itacademy.hibernate.utils.TestDataImporter;
+import by.itacademy.hibernate.entity.Company;
 import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.Role;
 import by.itacademy.hibernate.entity.User;
 import by.itacademy.hibernate.util.HibernateUtil;
 import lombok.Cleanup;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -22,8 +39,9 @@ import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 @TestInstance(PER_CLASS)
 class UserDaoTest {
 
-    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory(StatementCounter.properties());
     private final UserDao userDao = UserDao.getInstance();
+    private final CompanyDao companyDao = CompanyDao.getInstance();
 
     @BeforeAll
     public void initDb() {
@@ -91,6 +109,79 @@ class UserDaoTest {
         session.getTransaction().commit();
     }
 
+    @Test
+    void findUsersOrderedByBirthday() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<String> fullNames = new ArrayList<>();
+        String cursor = null;
+        do {
+            Slice<User> page = userDao.findUsersOrderedByBirthday(session, cursor, 2);
+            assertThat(page.content()).hasSizeLessThanOrEqualTo(2);
+            page.content().stream().map(User::fullName).forEach(fullNames::add);
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(fullNames).containsExactly("Diane Greene", "Steve Jobs", "Bill Gates", "Tim Cook", "Sergey Brin");
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findAllByCompanyNameWithCursor() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        Slice<User> firstPage = userDao.findAllByCompanyName(session, "Apple", null, 1);
+        assertThat(firstPage.content()).hasSize(1);
+        assertThat(firstPage.hasNext()).isTrue();
+
+        Slice<User> secondPage = userDao.findAllByCompanyName(session, "Apple", firstPage.nextCursor(), 1);
+        assertThat(secondPage.content()).hasSize(1);
+        assertThat(secondPage.hasNext()).isFalse();
+
+        List<String> fullNames = Stream.concat(firstPage.content().stream(), secondPage.content().stream())
+                .map(User::fullName)
+                .collect(toList());
+        assertThat(fullNames).containsExactly("Steve Jobs", "Tim Cook");
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void streamAllByCompanyName() {
+        @Cleanup StatelessSession session = sessionFactory.openStatelessSession();
+        session.beginTransaction();
+
+        try (Stream<User> users = userDao.streamAllByCompanyName(session, "Google", 1)) {
+            List<String> fullNames = users.map(User::fullName).collect(toList());
+            assertThat(fullNames).containsExactlyInAnyOrder("Sergey Brin", "Diane Greene");
+        }
+        try (Stream<User> users = userDao.streamAll(session, 2)) {
+            assertThat(users.count()).isEqualTo(5);
+        }
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void scrollAll() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<String> fullNames = new ArrayList<>();
+        userDao.scrollAll(session, 2, user -> {
+            assertThat(session.contains(user)).isTrue();
+            fullNames.add(user.fullName());
+        });
+
+        assertThat(fullNames).hasSize(5);
+        assertThat(entityNames(session)).doesNotContain(User.class.getName());
+
+        session.getTransaction().commit();
+    }
+
     @Test
     void findAllPaymentsByCompanyName() {
         @Cleanup Session session = sessionFactory.openSession();
@@ -105,6 +196,23 @@ class UserDaoTest {
         session.getTransaction().commit();
     }
 
+    @Test
+    void scrollAllPaymentsByCompanyName() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<Integer> amounts = new ArrayList<>();
+        userDao.scrollAllPaymentsByCompanyName(session, "Google", 2, payment -> {
+            assertThat(session.contains(payment)).isTrue();
+            amounts.add(payment.getAmount());
+        });
+
+        assertThat(amounts).containsExactly(300, 300, 300, 500, 500, 500);
+        assertThat(entityNames(session)).doesNotContain(Payment.class.getName(), User.class.getName());
+
+        session.getTransaction().commit();
+    }
+
     @Test
     void findAveragePaymentAmountByFirstAndLastNames() {
         @Cleanup Session session = sessionFactory.openSession();
@@ -149,4 +257,307 @@ class UserDaoTest {
 
         session.getTransaction().commit();
     }
+
+    @Test
+    void findCompanyAvgPayments() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<CompanyAvgPayment> results = userDao.findCompanyAvgPayments(session);
+
+        assertThat(results).containsExactly(
+                new CompanyAvgPayment("Apple", 410.0),
+                new CompanyAvgPayment("Google", 400.0),
+                new CompanyAvgPayment("Microsoft", 300.0));
+        assertThat(session.getStatistics().getEntityCount()).isZero();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findUsersWithAvgPaymentAboveOverall() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<UserAvgPayment> results = userDao.findUsersWithAvgPaymentAboveOverall(session);
+
+        assertThat(results).extracting(UserAvgPayment::fullName).containsExactly("Sergey Brin", "Steve Jobs");
+        assertThat(results).extracting(UserAvgPayment::avg).containsExactly(500.0, 450.0);
+        assertThat(session.getStatistics().getEntityCount()).isZero();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findAboveAverageEarners() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        assertThat(userDao.findAboveAverageEarners(session, 1.0, 100))
+                .isEqualTo(userDao.findUsersWithAvgPaymentAboveOverall(session));
+        assertThat(userDao.findAboveAverageEarners(session, 0.9, 2))
+                .extracting(UserAvgPayment::fullName).containsExactly("Sergey Brin", "Steve Jobs");
+        assertThat(userDao.findAboveAverageEarners(session, 0.9, 100, "Apple"))
+                .extracting(UserAvgPayment::fullName).containsExactly("Steve Jobs", "Tim Cook");
+        assertThat(userDao.findAboveAverageEarners(session, 1.2, 100))
+                .extracting(UserAvgPayment::avg).containsExactly(500.0);
+        assertThat(userDao.findAboveAverageEarners(session, 1.0, 100, "Oracle")).isEmpty();
+        assertThat(session.getStatistics().getEntityCount()).isZero();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void searchByName() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        assertThat(userDao.searchByName(session, "St", 10))
+                .extracting(UserSearchHit::fullName).containsExactly("Steve Jobs");
+        assertThat(userDao.searchByName(session, "gtes", 10))
+                .extracting(UserSearchHit::username).containsExactly("BillGates");
+        assertThat(userDao.searchByName(session, "s", 10))
+                .extracting(UserSearchHit::username).containsExactlyInAnyOrder("SergeyBrin", "SteveJobs");
+        assertThat(userDao.searchByName(session, "%", 10)).isEmpty();
+        assertThat(userDao.searchByName(session, " ", 10)).isEmpty();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findAllByAgeBetween() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        LocalDate today = LocalDate.of(2025, Month.OCTOBER, 27);
+        assertThat(userDao.findAllByAgeBetween(session, 60, 69, today))
+                .extracting(User::fullName).containsExactly("Bill Gates", "Tim Cook");
+        assertThat(userDao.findAllByAgeBetween(session, 70, 70, today))
+                .extracting(User::fullName).containsExactly("Diane Greene", "Steve Jobs");
+        assertThat(userDao.findAllByAgeBetween(session, 70, 70, today.plusDays(1)))
+                .extracting(User::fullName).containsExactly("Diane Greene", "Steve Jobs", "Bill Gates");
+        assertThat(userDao.findAllByAgeBetween(session, 0, 200))
+                .hasSize(5);
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findAllByFilter() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        LocalDate today = LocalDate.of(2025, Month.OCTOBER, 27);
+        assertThat(userDao.findAll(session, UserFilter.ANY))
+                .hasSize(5);
+        assertThat(userDao.findAll(session, UserFilter.builder().minAge(60).maxAge(69).build(), FetchPlan.NONE, today))
+                .extracting(User::fullName).containsExactly("Bill Gates", "Tim Cook");
+        assertThat(userDao.findAll(session, UserFilter.builder().minAveragePayment(450.0).build()))
+                .extracting(User::fullName).containsExactly("Steve Jobs", "Sergey Brin");
+        assertThat(userDao.findAll(session, UserFilter.builder().companyName("Apple").minAveragePayment(400.0).build()))
+                .extracting(User::fullName).containsExactly("Steve Jobs");
+        assertThat(userDao.findAll(session, UserFilter.builder().firstName("Diane").lastName("Greene").minAge(70).build(),
+                FetchPlan.of(UserAssociation.COMPANY), today))
+                .extracting(User::fullName).containsExactly("Diane Greene");
+        assertThat(userDao.findAll(session, UserFilter.builder().companyName("Google").role(Role.ADMIN).build()))
+                .isEmpty();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findAllByFilterJoinsOnlyNeededTablesAndReusesQueryPlans() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        Statistics statistics = sessionFactory.getStatistics();
+
+        List<String> statements = StatementCounter.capture(() -> userDao.findAll(session,
+                UserFilter.builder().firstName("Tim").maxAge(80).build()));
+        long misses = statistics.getQueryPlanCacheMissCount();
+        List<String> repeated = StatementCounter.capture(() -> userDao.findAll(session,
+                UserFilter.builder().firstName("Bill").maxAge(70).build()));
+
+        assertThat(statements).hasSize(1);
+        assertThat(statements.get(0)).doesNotContain(" join ", " company ", "payment");
+        assertThat(repeated).isEqualTo(statements);
+        assertThat(statistics.getQueryPlanCacheMissCount()).isEqualTo(misses);
+        assertThat(StatementCounter.capture(() -> userDao.findAll(session,
+                UserFilter.builder().companyName("Apple").minAveragePayment(1.0).build())))
+                .singleElement().asString()
+                .contains("join company ", "from receiver_payment_stats ")
+                .doesNotContain(" payment ");
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findUpcomingBirthdays() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        assertThat(userDao.findUpcomingBirthdays(session, 7, LocalDate.of(2025, Month.OCTOBER, 27)))
+                .extracting(User::fullName).containsExactly("Bill Gates", "Tim Cook");
+        assertThat(userDao.findUpcomingBirthdays(session, 0, LocalDate.of(2025, Month.FEBRUARY, 24)))
+                .extracting(User::fullName).containsExactly("Steve Jobs");
+        assertThat(userDao.findUpcomingBirthdays(session, 60, LocalDate.of(2025, Month.DECEMBER, 28)))
+                .extracting(User::fullName).containsExactly("Diane Greene", "Steve Jobs");
+        assertThat(userDao.findUpcomingBirthdays(session, 365, LocalDate.of(2025, Month.AUGUST, 22)))
+                .extracting(User::fullName)
+                .containsExactly("Bill Gates", "Tim Cook", "Diane Greene", "Steve Jobs", "Sergey Brin");
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void countUsersByCompanyAndAgeBucket() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        assertThat(userDao.countUsersByCompanyAndAgeBucket(session, 10, LocalDate.of(2025, Month.OCTOBER, 27)))
+                .containsExactly(
+                        new CompanyAgeBucket("Apple", 60, 1L),
+                        new CompanyAgeBucket("Apple", 70, 1L),
+                        new CompanyAgeBucket("Google", 50, 1L),
+                        new CompanyAgeBucket("Google", 70, 1L),
+                        new CompanyAgeBucket("Microsoft", 60, 1L));
+        assertThat(session.getStatistics().getEntityCount()).isZero();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findByUsernameIsServedFromSecondLevelCache() {
+        Statistics statistics = sessionFactory.getStatistics();
+        findByUsername("TimCook");
+        long queries = statistics.getPrepareStatementCount();
+        long naturalIdHits = statistics.getNaturalIdCacheHitCount();
+
+        Optional<User> user = findByUsername("TimCook");
+
+        assertThat(user).map(User::fullName).contains("Tim Cook");
+        assertThat(statistics.getNaturalIdCacheHitCount()).isGreaterThan(naturalIdHits);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(queries);
+        assertThat(findByUsername("NoSuchUser")).isEmpty();
+    }
+
+    @Test
+    void findCompanyByNameIsServedFromSecondLevelCache() {
+        Statistics statistics = sessionFactory.getStatistics();
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        companyDao.findByName(session, "Google");
+        session.getTransaction().commit();
+
+        long queries = statistics.getPrepareStatementCount();
+        @Cleanup Session anotherSession = sessionFactory.openSession();
+        anotherSession.beginTransaction();
+        Optional<Company> company = companyDao.findByName(anotherSession, "Google");
+        anotherSession.getTransaction().commit();
+
+        assertThat(company).map(Company::getName).contains("Google");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(queries);
+        assertThat(statistics.getDomainDataRegionStatistics("company").getHitCount()).isPositive();
+    }
+
+    private Optional<User> findByUsername(String username) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        Optional<User> user = userDao.findByUsername(session, username);
+        session.getTransaction().commit();
+        return user;
+    }
+
+    @Test
+    void findAllDoesNotFetchInverseProfile() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<User> users = StatementCounter.expectAtMost(1, () -> userDao.findAll(session));
+
+        assertThat(users).hasSize(5);
+        assertThat(users).noneMatch(user -> Hibernate.isPropertyInitialized(user, "profile"));
+        assertThat(StatementCounter.expectAtMost(1, () -> users.get(0).getProfile())).isNull();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void updateInsideEmbeddablePersonalInfoIsFlushed() {
+        renameTimCook("Cook-Jr");
+        try {
+            @Cleanup Session session = sessionFactory.openSession();
+            User user = userDao.findByUsername(session, "TimCook").orElseThrow();
+
+            assertThat(user.getPersonalInfo().getLastname()).isEqualTo("Cook-Jr");
+        } finally {
+            renameTimCook("Cook");
+        }
+    }
+
+    private void renameTimCook(String lastname) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        userDao.findByUsername(session, "TimCook").orElseThrow().getPersonalInfo().setLastname(lastname);
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findAllWithFetchPlanLoadsAssociationsInBoundedQueries() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        FetchPlan fetchPlan = FetchPlan.of(UserAssociation.values());
+
+        int payments = StatementCounter.expectAtMost(3, () -> {
+            List<User> users = userDao.findAll(session, fetchPlan);
+            users.forEach(user -> {
+                user.getCompany().getName();
+                user.getUserChats().size();
+            });
+            return users.stream().mapToInt(user -> user.getPayments().size()).sum();
+        });
+
+        assertThat(payments).isEqualTo(14);
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findAllByCompanyNameWithFetchPlanLoadsPaymentsInBatches() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        userDao.findAllByCompanyName(session, "Apple");
+        session.clear();
+
+        List<User> users = StatementCounter.expectAtMost(3, () -> userDao.findAllByCompanyName(
+                session, "Apple", FetchPlan.of(UserAssociation.PROFILE, UserAssociation.PAYMENTS)));
+
+        assertThat(users).allMatch(user -> Hibernate.isInitialized(user.getPayments()));
+        assertThat(users).noneMatch(user -> Hibernate.isInitialized(user.getUserChats()));
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void limitedUsersWithFetchPlanLoadPaymentsOnlyForFoundUsers() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<User> users = new ArrayList<>();
+        List<String> statements = StatementCounter.capture(() -> users.addAll(userDao.findLimitedUsersOrderedByBirthday(
+                session, 2, FetchPlan.of(UserAssociation.PAYMENTS))));
+
+        assertThat(statements).hasSize(2);
+        assertThat(statements.get(1)).doesNotContain("users");
+        assertThat(users).allMatch(user -> Hibernate.isInitialized(user.getPayments()));
+        assertThat(entityNames(session))
+                .filteredOn(Payment.class.getName()::equals)
+                .hasSize(6);
+
+        session.getTransaction().commit();
+    }
+
+    private static List<String> entityNames(Session session) {
+        Set<?> keys = session.getStatistics().getEntityKeys();
+        return keys.stream().map(key -> ((EntityKey) key).getEntityName()).toList();
+    }
 }
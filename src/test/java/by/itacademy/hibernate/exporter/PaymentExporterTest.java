@@ -0,0 +1,73 @@
+package by.itacademy.hibernate.exporter;
+
+import by.itacademy.hibernate.util.HibernateUtil;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class PaymentExporterTest {
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+    private final PaymentExporter exporter = new PaymentExporter(sessionFactory, 2);
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void exportsCsv() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exporter.export("Apple", out, ExportFormat.CSV);
+
+        assertThat(rows).isEqualTo(5);
+        assertThat(out.toString(StandardCharsets.UTF_8).lines())
+                .first().isEqualTo("id,amount,receiver_full_name,receiver_username");
+        assertThat(out.toString(StandardCharsets.UTF_8).lines().skip(1))
+                .map(line -> line.substring(line.indexOf(',') + 1))
+                .containsExactly(
+                        "250,Steve Jobs,SteveJobs",
+                        "500,Steve Jobs,SteveJobs",
+                        "600,Steve Jobs,SteveJobs",
+                        "300,Tim Cook,TimCook",
+                        "400,Tim Cook,TimCook");
+    }
+
+    @Test
+    void exportsNewlineDelimitedJson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exporter.export("Google", out, ExportFormat.NDJSON);
+
+        assertThat(rows).isEqualTo(6);
+        assertThat(out.toString(StandardCharsets.UTF_8).lines())
+                .hasSize(6)
+                .first().asString()
+                .matches("\\{\"id\":\\d+,\"amount\":300,\"receiverFullName\":\"Diane Greene\",\"receiverUsername\":\"DianeGreene\"}");
+    }
+
+    @Test
+    void exportsOnlyHeaderForUnknownCompany() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(exporter.export("Oracle", out, ExportFormat.CSV)).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("id,amount,receiver_full_name,receiver_username\n");
+    }
+}
@@ -0,0 +1,117 @@
+package by.itacademy.hibernate.importer;
+
+import by.itacademy.hibernate.dao.PaymentStatsDao;
+import by.itacademy.hibernate.dao.UserDao;
+import by.itacademy.hibernate.util.HibernateUtil;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class PaymentCopyImporterTest {
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+    private final UserDao userDao = UserDao.getInstance();
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void ingestCsv() {
+        String csv = """
+                username,amount
+                TimCook,1000
+                "TimCook",1300
+                NoSuchUser,100
+                TimCook,abc
+                """;
+        List<PaymentIngestResult> progress = new ArrayList<>();
+        PaymentCopyImporter importer = new PaymentCopyImporter(sessionFactory, 2, progress::add);
+
+        PaymentIngestResult result = importer.ingest(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), PaymentFormat.CSV);
+
+        assertThat(result.copyUsed()).isTrue();
+        assertThat(result.accepted()).isEqualTo(2);
+        assertThat(result.rejectedCount()).isEqualTo(2);
+        assertThat(result.rejected().stream().map(RejectedPayment::recordNumber).collect(toList()))
+                .containsExactlyInAnyOrder(4L, 5L);
+        assertThat(progress).isNotEmpty();
+        assertThat(averagePayment("Tim", "Cook")).isEqualTo(750.0);
+        assertThat(averagePaymentFromStats("Tim", "Cook")).isEqualTo(750.0);
+    }
+
+    @Test
+    void ingestBinary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF("DianeGreene");
+        out.writeInt(600);
+        out.writeUTF("DianeGreene");
+        out.writeInt(600);
+
+        PaymentIngestResult result = new PaymentCopyImporter(sessionFactory)
+                .ingest(new ByteArrayInputStream(bytes.toByteArray()), PaymentFormat.BINARY);
+
+        assertThat(result.accepted()).isEqualTo(2);
+        assertThat(result.rejectedCount()).isZero();
+        assertThat(averagePayment("Diane", "Greene")).isEqualTo(420.0);
+    }
+
+    @Test
+    void ingestBinaryRejectsTruncatedRecord() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF("SergeyBrin");
+        out.writeInt(700);
+        out.writeUTF("SergeyBrin");
+        out.writeShort(0);
+
+        PaymentIngestResult result = new PaymentCopyImporter(sessionFactory)
+                .ingest(new ByteArrayInputStream(bytes.toByteArray()), PaymentFormat.BINARY);
+
+        assertThat(result.accepted()).isEqualTo(1);
+        assertThat(result.rejectedCount()).isEqualTo(1);
+        assertThat(result.rejected()).containsExactly(new RejectedPayment(2, "Truncated record"));
+    }
+
+    private Double averagePaymentFromStats(String firstName, String lastName) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        Double average = PaymentStatsDao.getInstance().findAveragePaymentAmountByFirstAndLastNames(session, firstName, lastName);
+        session.getTransaction().commit();
+        return average;
+    }
+
+    private Double averagePayment(String firstName, String lastName) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        Double average = userDao.findAveragePaymentAmountByFirstAndLastNames(session, firstName, lastName);
+        session.getTransaction().commit();
+        return average;
+    }
+}
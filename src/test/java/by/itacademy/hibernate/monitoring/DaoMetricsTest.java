@@ -0,0 +1,95 @@
+package by.itacademy.hibernate.monitoring;
+
+import by.itacademy.hibernate.dao.UserDao;
+import by.itacademy.hibernate.util.HibernateUtil;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class DaoMetricsTest {
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+    private final UserDao userDao = UserDao.getInstance();
+    private final DaoMetrics metrics = DaoMetrics.getInstance();
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @BeforeEach
+    public void resetMetrics() {
+        metrics.reset();
+    }
+
+    @Test
+    void recordsStatementsRowsEntitiesAndCacheHits() {
+        for (int i = 0; i < 2; i++) {
+            @Cleanup Session session = sessionFactory.openSession();
+            session.beginTransaction();
+            userDao.findAllByCompanyName(session, "Google");
+            session.getTransaction().commit();
+        }
+
+        MethodStats stats = metrics.snapshot().get("UserDao.findAllByCompanyName");
+        assertThat(stats.calls()).isEqualTo(2);
+        assertThat(stats.errors()).isZero();
+        assertThat(stats.rowsFetched()).isEqualTo(4);
+        assertThat(stats.entitiesLoaded()).isGreaterThanOrEqualTo(4);
+        assertThat(stats.statements()).isPositive();
+        assertThat(stats.secondLevelCacheHits()).isPositive();
+        assertThat(stats.p999Millis()).isGreaterThanOrEqualTo(stats.p50Millis());
+        assertThat(stats.maxMillis()).isPositive();
+    }
+
+    @Test
+    void attributesNestedCallsToOuterMethod() {
+        @Cleanup Session session = sessionFactory.openSession();
+        metrics.record("report", () -> userDao.findAll(session));
+
+        assertThat(metrics.snapshot()).containsOnlyKeys("report");
+    }
+
+    @Test
+    void recordsFailedCalls() {
+        assertThatThrownBy(() -> metrics.record("failing", () -> {
+            throw new IllegalStateException();
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(metrics.snapshot().get("failing").errors()).isEqualTo(1);
+    }
+
+    @Test
+    void exposesMetricsOverJmx() throws Exception {
+        try (Session session = sessionFactory.openSession()) {
+            userDao.findAll(session);
+        }
+
+        TabularData calls = (TabularData) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(DaoMetrics.OBJECT_NAME), "Calls");
+        assertThat(calls.get(new Object[]{"UserDao.findAll"}).get("value")).isEqualTo(1L);
+
+        assertThat(ManagementFactory.getPlatformMBeanServer()
+                .queryNames(new ObjectName("by.itacademy.hibernate:type=HibernateStatistics,*"), null)).isNotEmpty();
+    }
+}
@@ -0,0 +1,146 @@
+package by.itacademy.hibernate.monitoring;
+
+import by.itacademy.hibernate.dao.UserDao;
+import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.util.HibernateUtil;
+import by.itacademy.hibernate.util.QueryWarmUp;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import lombok.Cleanup;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class SlowQueryLogTest {
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory(logEverything());
+    private final UserDao userDao = UserDao.getInstance();
+    private final List<LoggingEvent> events = new CopyOnWriteArrayList<>();
+    private final AppenderSkeleton appender = new AppenderSkeleton() {
+        @Override
+        protected void append(LoggingEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+    };
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+        Logger.getLogger(SlowQueryLog.class).addAppender(appender);
+    }
+
+    @AfterAll
+    public void finish() {
+        Logger.getLogger(SlowQueryLog.class).removeAppender(appender);
+        sessionFactory.close();
+    }
+
+    @BeforeEach
+    public void clearEvents() {
+        events.clear();
+    }
+
+    @Test
+    void logsStatementWithParametersDaoMethodAndPlan() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        assertThat(userDao.findAllByFirstName(session, "Bill")).hasSize(1);
+
+        assertThat(events).singleElement().satisfies(event -> {
+            assertThat(event.getLevel()).isEqualTo(Level.WARN);
+            assertThat(event.getRenderedMessage())
+                    .startsWith("slow ")
+                    .contains("[UserDao.findAllByFirstName]", "from public.users", "parameters: 1='Bill'", "actual time=");
+        });
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void explainDoesNotRepeatChangesOrBreakTransaction() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        User tim = userDao.findByUsername(session, "TimCook").orElseThrow();
+        long payments = countPayments(session, tim);
+
+        session.save(Payment.builder().receiver(tim).amount(900).build());
+        session.flush();
+        assertThat(countPayments(session, tim)).isEqualTo(payments + 1);
+        session.getTransaction().commit();
+
+        assertThat(events).anySatisfy(event -> assertThat(event.getRenderedMessage())
+                .contains("insert into payment", "batch: 1 rows", "Insert on payment")
+                .doesNotContain("actual time=", "explain failed"));
+    }
+
+    @Test
+    void samplesStatementsBelowThreshold() throws Exception {
+        SlowQueryLog sampled = new SlowQueryLog(null, 1.0, SlowQueryLog.ExplainMode.NONE);
+        SlowQueryLog disabled = SlowQueryLog.fromSettings(Map.of());
+        assertThat(disabled.isEnabled()).isFalse();
+
+        @Cleanup Session session = sessionFactory.openSession();
+        session.doWork(connection -> {
+            Connection wrapped = sampled.wrap(connection);
+            try (PreparedStatement statement = wrapped.prepareStatement("select ? + 1")) {
+                statement.setInt(1, 41);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    assertThat(resultSet.getInt(1)).isEqualTo(42);
+                }
+            }
+        });
+
+        assertThat(events)
+                .filteredOn(event -> event.getLevel() == Level.INFO)
+                .singleElement()
+                .extracting(LoggingEvent::getRenderedMessage).asString()
+                .startsWith("sampled ")
+                .contains("[-] select ? + 1 | parameters: 1=41")
+                .doesNotContain("explain");
+    }
+
+    private long countPayments(Session session, User receiver) {
+        return session.createQuery("select count(p) from Payment p where p.receiver = :receiver", Long.class)
+                .setParameter("receiver", receiver)
+                .getSingleResult();
+    }
+
+    private static Properties logEverything() {
+        Properties properties = new Properties();
+        properties.setProperty(SlowQueryLog.THRESHOLD_MS, "0");
+        properties.setProperty(SlowQueryLog.SAMPLE_RATE, "0");
+        properties.setProperty(SlowQueryLog.EXPLAIN, "analyze");
+        properties.setProperty(QueryWarmUp.EXECUTIONS, "0");
+        return properties;
+    }
+}
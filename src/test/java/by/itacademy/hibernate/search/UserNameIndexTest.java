@@ -0,0 +1,81 @@
+package by.itacademy.hibernate.search;
+
+import by.itacademy.hibernate.dao.UserDao;
+import by.itacademy.hibernate.dto.UserSearchHit;
+import by.itacademy.hibernate.entity.PersonalInfo;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.util.HibernateUtil;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class UserNameIndexTest {
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+    private final UserDao userDao = UserDao.getInstance();
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void searchesByPrefixAndFollowsUserChanges() {
+        UserNameIndex index = UserNameIndex.attach(sessionFactory);
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.search("S", 10))
+                .extracting(UserSearchHit::username).containsExactlyInAnyOrder("SergeyBrin", "SteveJobs");
+        assertThat(index.search("billgates", 10))
+                .extracting(UserSearchHit::fullName).containsExactly("Bill Gates");
+        assertThat(index.search("s", 1)).hasSize(1);
+        assertThat(index.search(" ", 10)).isEmpty();
+
+        inTransaction(session -> session.save(User.builder()
+                .username("SatyaNadella")
+                .personalInfo(PersonalInfo.builder().firstname("Satya").lastname("Nadella").build())
+                .build()));
+        assertThat(index.search("sat", 10))
+                .extracting(UserSearchHit::fullName).containsExactly("Satya Nadella");
+
+        inTransaction(session -> userDao.findByUsername(session, "SatyaNadella").orElseThrow()
+                .getPersonalInfo().setLastname("Smith"));
+        assertThat(index.search("nad", 10)).isEmpty();
+        assertThat(index.search("smi", 10))
+                .extracting(UserSearchHit::fullName).containsExactly("Satya Smith");
+
+        inTransaction(session -> session.delete(userDao.findByUsername(session, "SatyaNadella").orElseThrow()));
+        assertThat(index.search("sat", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(5);
+
+        Session rolledBack = sessionFactory.openSession();
+        rolledBack.beginTransaction();
+        rolledBack.save(User.builder().username("LarryPage").build());
+        rolledBack.flush();
+        rolledBack.getTransaction().rollback();
+        rolledBack.close();
+        assertThat(index.search("larry", 10)).isEmpty();
+    }
+
+    private void inTransaction(Consumer<Session> work) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        work.accept(session);
+        session.getTransaction().commit();
+    }
+}
@@ -0,0 +1,112 @@
+package by.itacademy.hibernate.util;
+
+import by.itacademy.hibernate.dao.CompanyDao;
+import by.itacademy.hibernate.dao.UserDao;
+import by.itacademy.hibernate.entity.Company;
+import by.itacademy.hibernate.monitoring.ConnectionPoolMetrics;
+import by.itacademy.hibernate.monitoring.ConnectionPoolMetricsMXBean;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HibernateBootstrapTest {
+
+    private final UserDao userDao = UserDao.getInstance();
+
+    @Test
+    void buildsSessionFactoriesFromSharedMetadataAndPool() {
+        try (HibernateBootstrap bootstrap = new HibernateBootstrap()) {
+            for (int i = 0; i < 2; i++) {
+                @Cleanup SessionFactory sessionFactory = bootstrap.buildSessionFactory();
+                TestDataImporter.importData(sessionFactory);
+
+                @Cleanup Session session = sessionFactory.openSession();
+                assertThat(userDao.findAll(session)).hasSize(5);
+                assertThat(sessionFactory.unwrap(SessionFactoryImplementor.class)
+                        .getServiceRegistry()
+                        .getService(ConnectionProvider.class))
+                        .isInstanceOf(HikariCPConnectionProvider.class);
+            }
+
+            ConnectionPoolMetricsMXBean pool = ConnectionPoolMetrics.find("hql-task").orElseThrow();
+            assertThat(pool.getAcquisitions()).isPositive();
+            assertThat(pool.getTimeouts()).isZero();
+            assertThat(pool.getActiveConnections()).isZero();
+        }
+
+        assertThat(ConnectionPoolMetrics.find("hql-task")).isEmpty();
+    }
+
+    @Test
+    void closesPoolTogetherWithStandaloneSessionFactory() {
+        SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+        assertThat(ConnectionPoolMetrics.find("hql-task")).isPresent();
+
+        sessionFactory.close();
+
+        assertThat(ConnectionPoolMetrics.find("hql-task")).isEmpty();
+    }
+
+    @Test
+    void sessionFactoriesHaveSeparateSecondLevelCaches() {
+        @Cleanup SessionFactory first = HibernateUtil.buildSessionFactory();
+        TestDataImporter.importData(first);
+        Integer appleId = companyId(first, "Apple");
+
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.hbm2ddl.auto", "none");
+        properties.setProperty("hibernate.hikari.poolName", "hql-task-second");
+        SessionFactory second = HibernateUtil.buildSessionFactory(properties);
+        try (Session session = second.openSession()) {
+            assertThat(session.get(Company.class, appleId).getName()).isEqualTo("Apple");
+        }
+        assertThat(second.getStatistics().getSecondLevelCacheHitCount()).isZero();
+        second.close();
+
+        long hits = first.getStatistics().getSecondLevelCacheHitCount();
+        try (Session session = first.openSession()) {
+            assertThat(session.get(Company.class, appleId).getName()).isEqualTo("Apple");
+        }
+        assertThat(first.getStatistics().getSecondLevelCacheHitCount()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void openSessionFactoriesFromSharedBootstrapHaveSeparateSecondLevelCaches() {
+        try (HibernateBootstrap bootstrap = new HibernateBootstrap()) {
+            @Cleanup SessionFactory first = bootstrap.buildSessionFactory();
+            SessionFactory second = bootstrap.buildSessionFactory();
+            TestDataImporter.importData(first);
+            Integer appleId = companyId(first, "Apple");
+
+            try (Session session = second.openSession()) {
+                assertThat(session.get(Company.class, appleId).getName()).isEqualTo("Apple");
+            }
+            assertThat(second.getStatistics().getSecondLevelCacheHitCount()).isZero();
+            second.close();
+
+            long hits = first.getStatistics().getSecondLevelCacheHitCount();
+            try (Session session = first.openSession()) {
+                assertThat(session.get(Company.class, appleId).getName()).isEqualTo("Apple");
+                assertThat(userDao.findAll(session)).hasSize(5);
+            }
+            assertThat(first.getStatistics().getSecondLevelCacheHitCount()).isEqualTo(hits + 1);
+        }
+    }
+
+    private static Integer companyId(SessionFactory sessionFactory, String name) {
+        try (Session session = sessionFactory.openSession()) {
+            Company company = CompanyDao.getInstance().findByName(session, name).orElseThrow();
+            session.get(Company.class, company.getId());
+            return company.getId();
+        }
+    }
+}
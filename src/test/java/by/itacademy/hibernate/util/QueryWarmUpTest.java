@@ -0,0 +1,73 @@
+package by.itacademy.hibernate.util;
+
+import by.itacademy.hibernate.dao.UserDao;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class QueryWarmUpTest {
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory(singleConnectionPool());
+    private final UserDao userDao = UserDao.getInstance();
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void namedQueriesAreCompiledAndPreparedAtStartup() {
+        Statistics statistics = sessionFactory.getStatistics();
+        long misses = statistics.getQueryPlanCacheMissCount();
+
+        @Cleanup Session session = sessionFactory.openSession();
+        assertThat(userDao.findAllByFirstName(session, "Bill")).hasSize(1);
+        assertThat(userDao.findAveragePaymentAmountByFirstAndLastNames(session, "Bill", "Gates")).isEqualTo(300.0);
+        assertThat(userDao.findCompanyAvgPayments(session)).hasSize(3);
+
+        assertThat(statistics.getQueryPlanCacheMissCount()).isEqualTo(misses);
+        List<?> prepared = session.createNativeQuery("""
+                        select statement from pg_prepared_statements
+                        where statement like '%firstname=$1%'
+                        """)
+                .list();
+        assertThat(prepared).isNotEmpty();
+    }
+
+    @Test
+    void skipsQueriesWithoutParameters() {
+        QueryWarmUp warmUp = new QueryWarmUp(sessionFactory,
+                List.of("User.findAll", "User.findAllByFirstName", "Payment.findCompanyAvgPayments"), 1, 3);
+
+        assertThat(warmUp.run()).isEqualTo(3);
+    }
+
+    /**
+     * Пул из одного соединения: проверка pg_prepared_statements идёт на том же соединении, что прогревалось
+     */
+    private static Properties singleConnectionPool() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.hikari.maximumPoolSize", "1");
+        properties.setProperty("hibernate.hikari.minimumIdle", "1");
+        properties.setProperty(QueryWarmUp.CONNECTIONS, "1");
+        return properties;
+    }
+}
@@ -0,0 +1,182 @@
+package by.itacademy.hibernate.util;
+
+import by.itacademy.hibernate.dao.AsyncUserDao;
+import by.itacademy.hibernate.dao.FetchPlan;
+import by.itacademy.hibernate.entity.Company;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.utils.TestDataImporter;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+/**
+ * Реплику изображает отдельная база hql_task_replica на том же сервере PostgreSQL
+ * с теми же данными и дополнительной компанией Replica
+ */
+@TestInstance(PER_CLASS)
+class ReadReplicaRouterTest {
+
+    private static final String SERVER_URL = "jdbc:postgresql://localhost:5432/";
+    private static final String USERNAME = "postgres";
+    private static final String PASSWORD = "admin123qwe!";
+    private static final String REPLICA_DATABASE = "hql_task_replica";
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+    private HikariDataSource replica;
+    private HikariDataSource unavailableReplica;
+
+    @BeforeAll
+    public void initDb() throws SQLException {
+        TestDataImporter.importData(sessionFactory);
+        createReplica();
+        replica = dataSource(SERVER_URL + REPLICA_DATABASE);
+        unavailableReplica = dataSource("jdbc:postgresql://localhost:1/postgres");
+    }
+
+    @AfterAll
+    public void finish() {
+        replica.close();
+        unavailableReplica.close();
+        sessionFactory.close();
+    }
+
+    @Test
+    void routesReadOnlySessionsToHealthyReplicas() {
+        try (ReadReplicaRouter router = new ReadReplicaRouter(sessionFactory, List.of(unavailableReplica, replica))) {
+            assertThat(router.getHealthyReplicaCount()).isEqualTo(1);
+
+            for (int i = 0; i < 3; i++) {
+                @Cleanup Session session = router.openReadOnlySession();
+                assertThat(companyNames(session)).contains("Replica");
+                assertThat(session.isDefaultReadOnly()).isTrue();
+            }
+            @Cleanup Session session = router.openSession();
+            assertThat(companyNames(session)).doesNotContain("Replica");
+        }
+    }
+
+    @Test
+    void readsOwnWritesFromPrimary() {
+        try (ReadReplicaRouter router = new ReadReplicaRouter(sessionFactory, List.of(replica),
+                ReadReplicaRouter.DEFAULT_HEALTH_CHECK_INTERVAL, Duration.ofMinutes(1))) {
+            ReadYourWrites readYourWrites = new ReadYourWrites();
+            @Cleanup Session replicaSession = router.openReadOnlySession(readYourWrites);
+            assertThat(companyNames(replicaSession)).contains("Replica");
+
+            @Cleanup Session session = router.openSession(readYourWrites);
+            session.beginTransaction();
+            session.save(Company.builder().name("Amazon").build());
+            session.getTransaction().commit();
+
+            @Cleanup Session ownSession = router.openReadOnlySession(readYourWrites);
+            assertThat(companyNames(ownSession)).contains("Amazon").doesNotContain("Replica");
+            @Cleanup Session otherSession = router.openReadOnlySession(new ReadYourWrites());
+            assertThat(companyNames(otherSession)).contains("Replica").doesNotContain("Amazon");
+        }
+    }
+
+    @Test
+    void fallsBackToPrimaryWithoutHealthyReplicas() throws Exception {
+        try (ReadReplicaRouter router = new ReadReplicaRouter(sessionFactory, List.of(unavailableReplica));
+             AsyncUserDao asyncUserDao = new AsyncUserDao(router)) {
+            assertThat(router.getHealthyReplicaCount()).isZero();
+
+            @Cleanup Session session = router.openReadOnlySession();
+            assertThat(companyNames(session)).doesNotContain("Replica");
+            assertThat(asyncUserDao.findAll(FetchPlan.NONE).get()).extracting(User::fullName).contains("Bill Gates");
+        }
+    }
+
+    @Test
+    void replicaFailedDuringHealthCheckStaysExcluded() throws Exception {
+        CountDownLatch probing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Thread> checker = new AtomicReference<>();
+        DataSource flakyReplica = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getConnection") && checker.get() != null) {
+                        if (Thread.currentThread() != checker.get()) {
+                            throw new SQLException("Replica is down");
+                        }
+                        // проверка успела увидеть реплику живой до того, как запрос пометил её недоступной
+                        probing.countDown();
+                        release.await();
+                    }
+                    return method.invoke(replica, args);
+                });
+
+        try (ReadReplicaRouter router = new ReadReplicaRouter(sessionFactory, List.of(flakyReplica))) {
+            assertThat(router.getHealthyReplicaCount()).isEqualTo(1);
+
+            Thread check = new Thread(router::checkReplicas);
+            checker.set(check);
+            check.start();
+            assertThat(probing.await(5, TimeUnit.SECONDS)).isTrue();
+
+            @Cleanup Session session = router.openReadOnlySession();
+            assertThat(companyNames(session)).doesNotContain("Replica");
+            release.countDown();
+            check.join();
+
+            assertThat(router.getHealthyReplicaCount()).isZero();
+        }
+    }
+
+    private static List<String> companyNames(Session session) {
+        session.beginTransaction();
+        List<String> names = session.createQuery("select c.name from Company c", String.class).list();
+        session.getTransaction().commit();
+        return names;
+    }
+
+    private static void createReplica() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(SERVER_URL + "postgres", USERNAME, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("drop database if exists " + REPLICA_DATABASE);
+            statement.execute("create database " + REPLICA_DATABASE);
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.connection.url", SERVER_URL + REPLICA_DATABASE);
+        properties.setProperty("hibernate.hikari.poolName", "hql-task-replica-setup");
+        @Cleanup SessionFactory replicaSessionFactory = HibernateUtil.buildSessionFactory(properties);
+        TestDataImporter.importData(replicaSessionFactory);
+
+        @Cleanup Session session = replicaSessionFactory.openSession();
+        session.beginTransaction();
+        session.save(Company.builder().name("Replica").build());
+        session.getTransaction().commit();
+    }
+
+    private static HikariDataSource dataSource(String url) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setConnectionTimeout(250);
+        dataSource.setInitializationFailTimeout(-1);
+        return dataSource;
+    }
+}
@@ -0,0 +1,59 @@
+package by.itacademy.hibernate.utils;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * Считает SQL-запросы, выполненные в текущем потоке внутри {@link #expectAtMost}, и падает,
+ * если их больше ожидаемого. Подключается к SessionFactory через {@link #properties()}
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> STATEMENTS = new ThreadLocal<>();
+
+    public static Properties properties() {
+        Properties properties = new Properties();
+        properties.setProperty(AvailableSettings.STATEMENT_INSPECTOR, StatementCounter.class.getName());
+        return properties;
+    }
+
+    public static <T> T expectAtMost(int maxStatements, Supplier<T> call) {
+        List<String> statements = new ArrayList<>();
+        STATEMENTS.set(statements);
+        try {
+            T result = call.get();
+            if (statements.size() > maxStatements) {
+                throw new AssertionError("Expected at most %d statements, but %d were executed:%n%s"
+                        .formatted(maxStatements, statements.size(), String.join(System.lineSeparator(), statements)));
+            }
+            return result;
+        } finally {
+            STATEMENTS.remove();
+        }
+    }
+
+    public static List<String> capture(Runnable call) {
+        List<String> statements = new ArrayList<>();
+        STATEMENTS.set(statements);
+        try {
+            call.run();
+            return statements;
+        } finally {
+            STATEMENTS.remove();
+        }
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> statements = STATEMENTS.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+}
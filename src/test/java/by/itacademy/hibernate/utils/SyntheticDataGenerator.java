@@ -0,0 +1,410 @@
+package by.itacademy.hibernate.utils;
+
+import by.itacademy.hibernate.entity.Role;
+import by.itacademy.hibernate.util.PaymentStatsDatabaseObject;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+/**
+ * Воспроизводимый генератор больших наборов данных для масштабных тестов и бенчмарков: компании, сотрудники
+ * с PersonalInfo и днём рождения, профили, чаты, участие в чатах и выплаты по {@link SyntheticDataSpec}.
+ * <p>
+ * Каждая строка - чистая функция (seed, таблица, id), поэтому результат не зависит от числа потоков
+ * и порядка порций, а значения любой строки можно получить без базы ({@link #user}, {@link #payment}...).
+ * Размеры компаний, популярность чатов и число выплат на сотрудника распределены по Zipf; крупнейшие
+ * компании и получатели разбросаны по диапазону id, а не собраны в его начале.
+ * <p>
+ * Таблицы заполняются по порядку внешних ключей, каждая - порциями по {chunkSize} строк в {threads} потоков,
+ * порция - одна транзакция. На PostgreSQL строки идут через COPY, на остальных базах - JDBC-пачками.
+ * Триггеры статистики выплат на время загрузки отключаются (параллельные порции блокировали бы друг друга
+ * на одних и тех же строках статистики), а статистика затем пересчитывается целиком.
+ * Последовательности id сдвигаются за загруженные строки. Схема должна быть пустой
+ */
+@Slf4j
+public class SyntheticDataGenerator {
+
+    public static final int MAX_CHATS_PER_USER = 16;
+
+    private static final int COMPANIES = 1;
+    private static final int USERS = 2;
+    private static final int PROFILES = 3;
+    private static final int CHATS = 4;
+    private static final int USER_CHATS = 5;
+    private static final int PAYMENTS = 6;
+    private static final int SEQUENCE_STEP = 50;
+    private static final int JDBC_BATCH_SIZE = 1_000;
+    private static final LocalDate MIN_BIRTHDAY = LocalDate.of(1950, 1, 1);
+    private static final int BIRTHDAY_RANGE_DAYS = 55 * 365;
+    private static final String[] FIRST_NAMES = {
+            "Anna", "Boris", "Clara", "Dmitry", "Elena", "Fedor", "Galina", "Igor", "Irina", "Kirill",
+            "Larisa", "Maxim", "Natalia", "Oleg", "Olga", "Pavel", "Polina", "Roman", "Sofia", "Timur",
+            "Ulyana", "Viktor", "Vera", "Yuri", "Zoya", "Alex", "Maria", "Ivan", "Daria", "Nikita"
+    };
+    private static final String[] LAST_NAMES = {
+            "Ivanov", "Petrov", "Sidorov", "Smirnov", "Kuznetsov", "Popov", "Sokolov", "Lebedev", "Kozlov", "Novikov",
+            "Morozov", "Volkov", "Solovyov", "Vasiliev", "Zaytsev", "Pavlov", "Semenov", "Golubev", "Vinogradov",
+            "Bogdanov", "Vorobyov", "Fedorov", "Mikhailov", "Belyaev", "Tarasov", "Belov", "Komarov", "Orlov",
+            "Kiselev", "Makarov", "Andreev", "Kovalev", "Ilyin", "Gusev", "Titov", "Kuzmin", "Kudryavtsev", "Baranov"
+    };
+    private static final String[] LANGUAGES = {"en", "ru", "de", "fr", "es"};
+
+    private final SyntheticDataSpec spec;
+    private final ZipfPermutation companySizes;
+    private final ZipfPermutation receivers;
+    private final ZipfPermutation chatPopularity;
+
+    public SyntheticDataGenerator(SyntheticDataSpec spec) {
+        if (spec.getCompanies() <= 0 || spec.getUsers() <= 0 || spec.getChats() <= 0 || spec.getPayments() < 0) {
+            throw new IllegalArgumentException("Companies, users and chats must be positive, payments non-negative");
+        }
+        if (spec.getThreads() <= 0 || spec.getChunkSize() <= 0) {
+            throw new IllegalArgumentException("Threads and chunk size must be positive");
+        }
+        this.spec = spec;
+        this.companySizes = new ZipfPermutation(spec.getCompanies(), spec.getCompanySkew());
+        this.receivers = new ZipfPermutation(spec.getUsers(), spec.getPaymentSkew());
+        this.chatPopularity = new ZipfPermutation(spec.getChats(), spec.getChatSkew());
+    }
+
+    public static String companyName(long companyId) {
+        return "Company-" + companyId;
+    }
+
+    public static String chatName(long chatId) {
+        return "Chat-" + chatId;
+    }
+
+    /**
+     * Заполняет базу {sessionFactory}. Пул соединений должен вмещать {threads} соединений, иначе потоки будут ждать
+     */
+    public Summary generate(SessionFactory sessionFactory) {
+        long started = System.nanoTime();
+        boolean postgres = isPostgres(sessionFactory);
+        ExecutorService executor = Executors.newFixedThreadPool(spec.getThreads());
+        try {
+            if (postgres) {
+                execute(sessionFactory, "alter table payment disable trigger user");
+            }
+            try {
+                load(sessionFactory, executor, postgres, Table.COMPANY, spec.getCompanies(), this::company);
+                load(sessionFactory, executor, postgres, Table.USERS, spec.getUsers(), this::user);
+                load(sessionFactory, executor, postgres, Table.PROFILE, spec.getUsers(), this::profile);
+                load(sessionFactory, executor, postgres, Table.CHAT, spec.getChats(), this::chat);
+                load(sessionFactory, executor, postgres, Table.USERS_CHAT, spec.getUsers(), this::userChats);
+                load(sessionFactory, executor, postgres, Table.PAYMENT, spec.getPayments(), this::payment);
+            } finally {
+                // триггер включается и после ошибки загрузки: иначе статистика молча расходится с payment
+                if (postgres) {
+                    execute(sessionFactory, "alter table payment enable trigger user");
+                    execute(sessionFactory, PaymentStatsDatabaseObject.rebuildStatements().toArray(String[]::new));
+                }
+            }
+            restartSequences(sessionFactory);
+        } finally {
+            executor.shutdownNow();
+        }
+        Summary summary = count(sessionFactory, Duration.ofNanos(System.nanoTime() - started));
+        log.info("Synthetic data generated: {}", summary);
+        return summary;
+    }
+
+    /**
+     * Строка company: id, name
+     */
+    public List<Object[]> company(long id) {
+        return List.<Object[]>of(new Object[]{id, companyName(id)});
+    }
+
+    /**
+     * Строка users: id, firstname, lastname, birth_date, username, role, company_id
+     */
+    public List<Object[]> user(long id) {
+        SplittableRandom random = random(USERS, id);
+        String firstname = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        String lastname = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        return List.<Object[]>of(new Object[]{
+                id,
+                firstname,
+                lastname,
+                MIN_BIRTHDAY.plusDays(random.nextInt(BIRTHDAY_RANGE_DAYS)),
+                firstname.toLowerCase() + "." + lastname.toLowerCase() + id,
+                random.nextInt(100) == 0 ? Role.ADMIN.name() : Role.USER.name(),
+                companySizes.sample(random)});
+    }
+
+    /**
+     * Строка profile сотрудника {userId} (id профиля совпадает с id сотрудника) или пустой список: id, user_id, street, language
+     */
+    public List<Object[]> profile(long userId) {
+        SplittableRandom random = random(PROFILES, userId);
+        if (random.nextDouble() >= spec.getProfileShare()) {
+            return List.of();
+        }
+        return List.<Object[]>of(new Object[]{
+                userId, userId, "Street " + (random.nextInt(5_000) + 1),
+                LANGUAGES[(int) Math.min(LANGUAGES.length - 1, -Math.log(random.nextDouble()))]});
+    }
+
+    /**
+     * Строка chat: id, name
+     */
+    public List<Object[]> chat(long id) {
+        return List.<Object[]>of(new Object[]{id, chatName(id)});
+    }
+
+    /**
+     * Строки users_chat сотрудника {userId}: id, user_id, chat_id. Id - {@code (userId - 1) * 16 + n}, с пропусками
+     */
+    public List<Object[]> userChats(long userId) {
+        SplittableRandom random = random(USER_CHATS, userId);
+        // геометрическое распределение со средним chatsPerUser
+        double continueProbability = spec.getChatsPerUser() / (1 + spec.getChatsPerUser());
+        int count = 0;
+        while (count < MAX_CHATS_PER_USER && random.nextDouble() < continueProbability) {
+            count++;
+        }
+        count = Math.min(count, spec.getChats());
+        List<Object[]> rows = new ArrayList<>(count);
+        long[] chats = new long[count];
+        for (int n = 0; n < count; n++) {
+            long chatId;
+            do {
+                chatId = chatPopularity.sample(random);
+            } while (contains(chats, n, chatId));
+            chats[n] = chatId;
+            rows.add(new Object[]{(userId - 1) * MAX_CHATS_PER_USER + n + 1, userId, chatId});
+        }
+        return rows;
+    }
+
+    /**
+     * Строка payment: id, amount, receiver_id. Сумма распределена логнормально вокруг 500
+     */
+    public List<Object[]> payment(long id) {
+        SplittableRandom random = random(PAYMENTS, id);
+        int amount = (int) Math.min(100_000, Math.round(500 * Math.exp(0.6 * gaussian(random))));
+        return List.<Object[]>of(new Object[]{id, Math.max(amount, 1), receivers.sample(random)});
+    }
+
+    private void load(SessionFactory sessionFactory, ExecutorService executor, boolean postgres, Table table,
+                      long ids, LongFunction<List<Object[]>> rows) {
+        long started = System.nanoTime();
+        List<Future<?>> chunks = new ArrayList<>();
+        for (long from = 1; from <= ids; from += spec.getChunkSize()) {
+            long first = from;
+            long last = Math.min(from + spec.getChunkSize() - 1, ids);
+            chunks.add(executor.submit(() -> writeChunk(sessionFactory, postgres, table, first, last, rows)));
+        }
+        for (Future<?> chunk : chunks) {
+            try {
+                chunk.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading " + table, e);
+            } catch (ExecutionException e) {
+                chunks.forEach(pending -> pending.cancel(true));
+                throw new IllegalStateException("Unable to load " + table, e.getCause());
+            }
+        }
+        log.info("{}: {} ids loaded in {} ms", table, ids, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void writeChunk(SessionFactory sessionFactory, boolean postgres, Table table, long first, long last,
+                            LongFunction<List<Object[]>> rows) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.doWork(connection -> {
+            if (postgres) {
+                copy(connection, table, first, last, rows);
+            } else {
+                insert(connection, table, first, last, rows);
+            }
+        });
+        session.getTransaction().commit();
+    }
+
+    private static void copy(Connection connection, Table table, long first, long last,
+                             LongFunction<List<Object[]>> rows) throws SQLException {
+        StringBuilder csv = new StringBuilder();
+        for (long id = first; id <= last; id++) {
+            for (Object[] row : rows.apply(id)) {
+                for (int column = 0; column < row.length; column++) {
+                    if (column > 0) {
+                        csv.append(',');
+                    }
+                    csv.append(row[column]);
+                }
+                csv.append('\n');
+            }
+        }
+        try {
+            connection.unwrap(PGConnection.class)
+                    .getCopyAPI()
+                    .copyIn("COPY " + table.sql + " FROM STDIN WITH (FORMAT csv)", new StringReader(csv.toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void insert(Connection connection, Table table, long first, long last,
+                               LongFunction<List<Object[]>> rows) throws SQLException {
+        @Cleanup PreparedStatement statement = connection.prepareStatement(
+                "insert into " + table.sql + " values (" + "?, ".repeat(table.columns - 1) + "?)");
+        int batched = 0;
+        for (long id = first; id <= last; id++) {
+            for (Object[] row : rows.apply(id)) {
+                for (int column = 0; column < row.length; column++) {
+                    statement.setObject(column + 1, row[column]);
+                }
+                statement.addBatch();
+                if (++batched % JDBC_BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+        }
+        statement.executeBatch();
+    }
+
+    private void restartSequences(SessionFactory sessionFactory) {
+        // pooled-оптимизатор выдаёт id ниже значения последовательности, поэтому запас - шаг последовательности
+        execute(sessionFactory,
+                "alter sequence company_seq restart with " + (spec.getCompanies() + SEQUENCE_STEP + 1),
+                "alter sequence users_seq restart with " + (spec.getUsers() + SEQUENCE_STEP + 1),
+                "alter sequence users_chat_seq restart with "
+                + ((long) spec.getUsers() * MAX_CHATS_PER_USER + SEQUENCE_STEP + 1),
+                "alter sequence payment_seq restart with " + (spec.getPayments() + SEQUENCE_STEP + 1),
+                "alter table chat alter column id restart with " + (spec.getChats() + 1),
+                "alter table profile alter column id restart with " + (spec.getUsers() + 1));
+    }
+
+    private static Summary count(SessionFactory sessionFactory, Duration elapsed) {
+        @Cleanup Session session = sessionFactory.openSession();
+        return new Summary(
+                count(session, "Company"), count(session, "User"), count(session, "Profile"),
+                count(session, "Chat"), count(session, "UserChat"), count(session, "Payment"), elapsed);
+    }
+
+    private static long count(Session session, String entity) {
+        return session.createQuery("select count(*) from " + entity, Long.class).getSingleResult();
+    }
+
+    private static void execute(SessionFactory sessionFactory, String... statements) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : statements) {
+                    statement.execute(sql);
+                }
+            }
+        });
+        session.getTransaction().commit();
+    }
+
+    private static boolean isPostgres(SessionFactory sessionFactory) {
+        @Cleanup Session session = sessionFactory.openSession();
+        return session.doReturningWork(connection -> connection.isWrapperFor(PGConnection.class));
+    }
+
+    private SplittableRandom random(int table, long id) {
+        return new SplittableRandom(spec.getSeed() * 0x9E3779B97F4A7C15L + table * 0xC2B2AE3D27D4EB4FL + id);
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Бокс - Мюллер: у SplittableRandom нет nextGaussian
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static boolean contains(long[] values, int length, long value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Итоговое число строк в таблицах
+     */
+    public record Summary(long companies, long users, long profiles, long chats, long userChats, long payments,
+                          Duration elapsed) {
+
+        public long totalRows() {
+            return companies + users + profiles + chats + userChats + payments;
+        }
+    }
+
+    private enum Table {
+        COMPANY("company (id, name)", 2),
+        USERS("users (id, firstname, lastname, birth_date, username, role, company_id)", 7),
+        PROFILE("profile (id, user_id, street, language)", 4),
+        CHAT("chat (id, name)", 2),
+        USERS_CHAT("users_chat (id, user_id, chat_id)", 3),
+        PAYMENT("payment (id, amount, receiver_id)", 3);
+
+        private final String sql;
+        private final int columns;
+
+        Table(String sql, int columns) {
+            this.sql = sql;
+            this.columns = columns;
+        }
+    }
+
+    /**
+     * Степенное распределение рангов 1..n (непрерывная аппроксимация Zipf, обратная функция распределения за O(1)),
+     * ранг переводится в id перестановкой {@code 1 + rank * stride mod n}: простой stride около 0.618n взаимно прост с n,
+     * поэтому соседние ранги расходятся по всему диапазону id
+     */
+    private static class ZipfPermutation {
+
+        private final long n;
+        private final double skew;
+        private final double scale;
+        private final long stride;
+
+        private ZipfPermutation(long n, double skew) {
+            if (skew < 0) {
+                throw new IllegalArgumentException("Skew must be non-negative");
+            }
+            this.n = n;
+            this.skew = skew;
+            this.scale = skew == 1 ? Math.log(n + 1.0) : Math.pow(n + 1.0, 1 - skew) - 1;
+            long prime = BigInteger.valueOf((long) (n * 0.618)).nextProbablePrime().longValue();
+            while (n % prime == 0) {
+                prime = BigInteger.valueOf(prime).nextProbablePrime().longValue();
+            }
+            this.stride = prime;
+        }
+
+        long sample(SplittableRandom random) {
+            double u = random.nextDouble();
+            double x = skew == 1 ? Math.exp(u * scale) : Math.pow(1 + u * scale, 1 / (1 - skew));
+            long rank = Math.min((long) x, n);
+            return 1 + Math.floorMod(rank * stride, n);
+        }
+    }
+}
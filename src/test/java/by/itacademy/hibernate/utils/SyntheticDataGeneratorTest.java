@@ -0,0 +1,115 @@
+package by.itacademy.hibernate.utils;
+
+import by.itacademy.hibernate.entity.Company;
+import by.itacademy.hibernate.entity.Payment;
+import by.itacademy.hibernate.entity.ReceiverPaymentStats;
+import by.itacademy.hibernate.entity.User;
+import by.itacademy.hibernate.util.HibernateUtil;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class SyntheticDataGeneratorTest {
+
+    private static final SyntheticDataSpec SPEC = SyntheticDataSpec.builder()
+            .companies(50)
+            .users(5_000)
+            .payments(50_000)
+            .chats(200)
+            .threads(4)
+            .chunkSize(1_000)
+            .build();
+
+    private final SessionFactory sessionFactory = HibernateUtil.buildSessionFactory();
+    private final SyntheticDataGenerator generator = new SyntheticDataGenerator(SPEC);
+    private SyntheticDataGenerator.Summary summary;
+
+    @BeforeAll
+    public void initDb() {
+        summary = generator.generate(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void rowsDependOnlyOnSeedAndId() {
+        SyntheticDataGenerator same = new SyntheticDataGenerator(SPEC.toBuilder().threads(1).chunkSize(7).build());
+        SyntheticDataGenerator other = new SyntheticDataGenerator(SPEC.toBuilder().seed(7).build());
+
+        assertThat(same.user(42)).containsExactly(generator.user(42).get(0));
+        assertThat(same.payment(42)).containsExactly(generator.payment(42).get(0));
+        assertThat(same.userChats(42)).containsExactlyElementsOf(generator.userChats(42));
+        assertThat(other.user(42).get(0)).isNotEqualTo(generator.user(42).get(0));
+
+        @Cleanup Session session = sessionFactory.openSession();
+        User user = session.get(User.class, 42L);
+        Object[] row = generator.user(42).get(0);
+        assertThat(user.getUsername()).isEqualTo(row[4]);
+        assertThat(user.getPersonalInfo().getBirthDate().birthDate()).isEqualTo(row[3]);
+        assertThat(user.getCompany().getName()).isEqualTo(SyntheticDataGenerator.companyName((Long) row[6]));
+    }
+
+    @Test
+    void loadsConfiguredCardinalities() {
+        assertThat(summary.companies()).isEqualTo(50);
+        assertThat(summary.users()).isEqualTo(5_000);
+        assertThat(summary.chats()).isEqualTo(200);
+        assertThat(summary.payments()).isEqualTo(50_000);
+        assertThat(summary.profiles()).isBetween(2_250L, 2_750L);
+        assertThat(summary.userChats()).isBetween(12_000L, 18_000L);
+    }
+
+    @Test
+    void companySizesAndPaymentsPerUserAreSkewed() {
+        @Cleanup Session session = sessionFactory.openSession();
+        List<Long> companySizes = session.createQuery(
+                "select count(u) from User u group by u.company order by count(u) desc", Long.class).list();
+        List<Long> paymentsPerUser = session.createQuery(
+                "select count(p) from Payment p group by p.receiver order by count(p) desc", Long.class).list();
+
+        assertThat(companySizes.get(0)).isGreaterThan(10 * companySizes.get(companySizes.size() / 2));
+        assertThat(paymentsPerUser.get(0)).isGreaterThan(50 * SPEC.getPayments() / SPEC.getUsers());
+        // крупнейший получатель не обязан иметь наименьший id
+        assertThat(session.createQuery(
+                "select p.receiver.id from Payment p group by p.receiver.id order by count(p) desc", Long.class)
+                .setMaxResults(1).getSingleResult()).isNotEqualTo(1L);
+    }
+
+    @Test
+    void rebuildsPaymentStatsAndRestartsSequences() {
+        @Cleanup Session session = sessionFactory.openSession();
+        Long receiverId = (Long) generator.payment(42).get(0)[2];
+        Object[] totals = session.createQuery(
+                "select sum(p.amount), count(p) from Payment p where p.receiver.id = :id", Object[].class)
+                .setParameter("id", receiverId)
+                .getSingleResult();
+        ReceiverPaymentStats stats = session.get(ReceiverPaymentStats.class, receiverId);
+        assertThat(stats.getPaymentSum()).isEqualTo(totals[0]);
+        assertThat(stats.getPaymentCount()).isEqualTo(totals[1]);
+
+        session.beginTransaction();
+        Company company = Company.builder().name("Fresh").build();
+        session.save(company);
+        User user = User.builder().username("fresh.user").company(company).build();
+        session.save(user);
+        session.save(Payment.builder().amount(100).receiver(user).build());
+        session.flush();
+        assertThat(company.getId()).isGreaterThan(SPEC.getCompanies());
+        assertThat(user.getId()).isGreaterThan(SPEC.getUsers());
+        assertThat(session.get(ReceiverPaymentStats.class, user.getId()).getPaymentCount()).isEqualTo(1L);
+        session.getTransaction().rollback();
+    }
+}
@@ -0,0 +1,54 @@
+package by.itacademy.hibernate.utils;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Объём и распределения данных {@link SyntheticDataGenerator}. Перекосы задаются показателем степенного
+ * распределения (Zipf): 0 - равномерно, 1 и больше - несколько крупных компаний, чатов и получателей
+ * при длинном хвосте мелких
+ */
+@Value
+@Builder(toBuilder = true)
+public class SyntheticDataSpec {
+
+    @Builder.Default
+    long seed = 42;
+    @Builder.Default
+    int companies = 1_000;
+    @Builder.Default
+    int users = 100_000;
+    @Builder.Default
+    long payments = 1_000_000;
+    @Builder.Default
+    int chats = 10_000;
+    /**
+     * Доля сотрудников с профилем
+     */
+    @Builder.Default
+    double profileShare = 0.5;
+    /**
+     * Среднее число чатов сотрудника (геометрическое распределение, не больше {@link SyntheticDataGenerator#MAX_CHATS_PER_USER})
+     */
+    @Builder.Default
+    double chatsPerUser = 3.0;
+    /**
+     * Перекос размеров компаний
+     */
+    @Builder.Default
+    double companySkew = 1.1;
+    /**
+     * Перекос числа выплат на сотрудника
+     */
+    @Builder.Default
+    double paymentSkew = 0.9;
+    /**
+     * Перекос популярности чатов
+     */
+    @Builder.Default
+    double chatSkew = 1.0;
+    @Builder.Default
+    int threads = Runtime.getRuntime().availableProcessors();
+    @Builder.Default
+    int chunkSize = 50_000;
+}
@@ -2,70 +2,58 @@ package by.itacademy.hibernate.utils;
 
 
 import by.itacademy.hibernate.entity.*;
-import lombok.Cleanup;
+import by.itacademy.hibernate.importer.BulkImporter;
 import lombok.experimental.UtilityClass;
-import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
 
 @UtilityClass
 public class TestDataImporter {
 
     public void importData(SessionFactory sessionFactory) {
-        @Cleanup Session session = sessionFactory.openSession();
+        BulkImporter importer = new BulkImporter(sessionFactory);
 
-        Company microsoft = saveCompany(session, "Microsoft");
-        Company apple = saveCompany(session, "Apple");
-        Company google = saveCompany(session, "Google");
+        Company microsoft = company("Microsoft");
+        Company apple = company("Apple");
+        Company google = company("Google");
+        importer.importCompanies(List.of(microsoft, apple, google));
 
-        User billGates = saveUser(session, "Bill", "Gates",
+        User billGates = user("Bill", "Gates",
                 LocalDate.of(1955, Month.OCTOBER, 28), microsoft);
-        User steveJobs = saveUser(session, "Steve", "Jobs",
+        User steveJobs = user("Steve", "Jobs",
                 LocalDate.of(1955, Month.FEBRUARY, 24), apple);
-        User sergeyBrin = saveUser(session, "Sergey", "Brin",
+        User sergeyBrin = user("Sergey", "Brin",
                 LocalDate.of(1973, Month.AUGUST, 21), google);
-        User timCook = saveUser(session, "Tim", "Cook",
+        User timCook = user("Tim", "Cook",
                 LocalDate.of(1960, Month.NOVEMBER, 1), apple);
-        User dianeGreene = saveUser(session, "Diane", "Greene",
+        User dianeGreene = user("Diane", "Greene",
                 LocalDate.of(1955, Month.JANUARY, 1), google);
-
-        savePayment(session, billGates, 100);
-        savePayment(session, billGates, 300);
-        savePayment(session, billGates, 500);
-
-        savePayment(session, steveJobs, 250);
-        savePayment(session, steveJobs, 600);
-        savePayment(session, steveJobs, 500);
-
-        savePayment(session, timCook, 400);
-        savePayment(session, timCook, 300);
-
-        savePayment(session, sergeyBrin, 500);
-        savePayment(session, sergeyBrin, 500);
-        savePayment(session, sergeyBrin, 500);
-
-        savePayment(session, dianeGreene, 300);
-        savePayment(session, dianeGreene, 300);
-        savePayment(session, dianeGreene, 300);
+        importer.importUsers(List.of(billGates, steveJobs, sergeyBrin, timCook, dianeGreene));
+
+        List<Payment> payments = new ArrayList<>();
+        payments(payments, billGates, 100, 300, 500);
+        payments(payments, steveJobs, 250, 600, 500);
+        payments(payments, timCook, 400, 300);
+        payments(payments, sergeyBrin, 500, 500, 500);
+        payments(payments, dianeGreene, 300, 300, 300);
+        importer.importPayments(payments);
     }
 
-    private Company saveCompany(Session session, String name) {
-        Company company = Company.builder()
+    private Company company(String name) {
+        return Company.builder()
                 .name(name)
                 .build();
-        session.save(company);
-
-        return company;
     }
 
-    private User saveUser(Session session,
-                          String firstName,
-                          String lastName,
-                          LocalDate birthday,
-                          Company company) {
-        User user = User.builder()
+    private User user(String firstName,
+                      String lastName,
+                      LocalDate birthday,
+                      Company company) {
+        return User.builder()
                 .username(firstName + lastName)
                 .personalInfo(PersonalInfo.builder()
                         .firstname(firstName)
@@ -74,16 +62,14 @@ public class TestDataImporter {
                         .build())
                 .company(company)
                 .build();
-        session.save(user);
-
-        return user;
     }
 
-    private void savePayment(Session session, User user, Integer amount) {
-        Payment payment = Payment.builder()
-                .receiver(user)
-                .amount(amount)
-                .build();
-        session.save(payment);
+    private void payments(List<Payment> payments, User user, Integer... amounts) {
+        for (Integer amount : amounts) {
+            payments.add(Payment.builder()
+                    .receiver(user)
+                    .amount(amount)
+                    .build());
+        }
     }
-}
\ No newline at end of file
+}